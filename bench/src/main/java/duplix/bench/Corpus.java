@@ -0,0 +1,108 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * This class creates and removes the temporary files the
+ * benchmarks read. Contents are random but seeded, so every
+ * run reads the same bytes.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+final class Corpus {
+	private static final int BLOCK_SIZE = 1024 * 1024;
+	
+	private Corpus() {}
+	
+	/**
+	 * This method creates a file of random content.
+	 * 
+	 * @param dir directory to create the file in
+	 * @param size size of the file in bytes
+	 * @return path of the new file
+	 * @throws IOException if the file cannot be written
+	 */
+	static Path createFile(Path dir, long size) throws IOException {
+		Path file = Files.createTempFile(dir, "duplix-bench", ".bin");
+		byte[] block = new byte[BLOCK_SIZE];
+		new Random(42).nextBytes(block);
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (long written = 0; written < size; written += block.length)
+				out.write(block, 0, (int) Math.min(block.length, size - written));
+		}
+		return file;
+	}
+	
+	/**
+	 * This method creates a tree of small files, a given number of
+	 * directories deep and wide, with a given number of files in
+	 * each directory.
+	 * 
+	 * @param depth number of directory levels below the root
+	 * @param width number of subdirectories in each directory
+	 * @param files number of files in each directory
+	 * @return root of the new tree
+	 * @throws IOException if the tree cannot be written
+	 */
+	static Path createTree(int depth, int width, int files) throws IOException {
+		Path root = Files.createTempDirectory("duplix-bench");
+		fill(root, depth, width, files);
+		return root;
+	}
+	
+	private static void fill(Path dir, int depth, int width, int files) throws IOException {
+		for (int i = 0; i < files; i++)
+			Files.write(dir.resolve("file" + i + ".bin"), new byte[] { (byte) i });
+		if (depth > 0) {
+			for (int i = 0; i < width; i++)
+				fill(Files.createDirectory(dir.resolve("dir" + i)), depth - 1, width, files);
+		}
+	}
+	
+	/**
+	 * This method deletes a file, or a directory and everything in it.
+	 * 
+	 * @param path file or directory to delete
+	 * @throws IOException if anything cannot be deleted
+	 */
+	static void delete(Path path) throws IOException {
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
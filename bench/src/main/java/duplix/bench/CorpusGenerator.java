@@ -0,0 +1,227 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+
+import duplix.Sampler;
+
+/**
+ * This class creates a reproducible tree of files to scan. The tree
+ * is a given number of directories deep, with a given fan-out, and
+ * files are spread over every directory of it. File sizes follow a
+ * log-uniform distribution between a minimum and a maximum, which
+ * gives many small files and few large ones, as real trees have.
+ * <p>
+ * Each file is one of four kinds, chosen at random with the given
+ * ratios:
+ * <ul>
+ * <li>a copy of an earlier unique file (a duplicate),</li>
+ * <li>a file the size of an earlier unique file whose content differs
+ * in one byte that none of the windows of the default sample reads, so
+ * only a full read tells them apart,</li>
+ * <li>a hard link to an earlier file,</li>
+ * <li>otherwise, a unique file.</li>
+ * </ul>
+ * The same seed always gives the same tree. A JSON summary of what
+ * was created is printed when done.
+ * <p>
+ * Usage: java -cp benchmarks.jar duplix.bench.CorpusGenerator [directory]
+ * [-files count] [-size min:max] [-depth levels] [-fanout count]
+ * [-dupes ratio] [-samesize ratio] [-links ratio] [-seed number]
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class CorpusGenerator {
+	private static final int POOL_SIZE = 1024 * 1024;
+	private static final int STAMP_INTERVAL = 4096;
+	
+	private int files = 10000;
+	private long minSize = 1024;
+	private long maxSize = 16L * 1024 * 1024;
+	private int depth = 3;
+	private int fanout = 8;
+	private double dupeRatio = 0.2;
+	private double sameSizeRatio = 0.05;
+	private double linkRatio = 0.0;
+	private long seed = 42;
+	
+	private byte[] pool;
+	private ArrayList<Path> dirs;
+	private ArrayList<Path> uniques;
+	private ArrayList<Path> created;
+	private long uniqueCount, dupeCount, sameSizeCount, linkCount, bytes;
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0 || args[0].startsWith("-")) {
+			System.err.println("Usage: CorpusGenerator [directory] [-files count] [-size min:max] " + 
+					"[-depth levels] [-fanout count] [-dupes ratio] [-samesize ratio] [-links ratio] [-seed number]");
+			return;
+		}
+		CorpusGenerator generator = new CorpusGenerator();
+		for (int i = 1; i < args.length - 1; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "-files": generator.files = Integer.parseInt(value); break;
+				case "-size":
+					String[] range = value.split(":");
+					generator.minSize = Long.parseLong(range[0]);
+					generator.maxSize = Long.parseLong(range[range.length - 1]);
+					break;
+				case "-depth": generator.depth = Integer.parseInt(value); break;
+				case "-fanout": generator.fanout = Integer.parseInt(value); break;
+				case "-dupes": generator.dupeRatio = Double.parseDouble(value); break;
+				case "-samesize": generator.sameSizeRatio = Double.parseDouble(value); break;
+				case "-links": generator.linkRatio = Double.parseDouble(value); break;
+				case "-seed": generator.seed = Long.parseLong(value); break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		generator.generate(Paths.get(args[0]));
+		System.out.println(generator.toJson(Paths.get(args[0])));
+	}
+	
+	/**
+	 * This method creates the tree under a given root directory.
+	 * 
+	 * @param root directory to create the tree in
+	 * @throws IOException if a file cannot be written
+	 */
+	public void generate(Path root) throws IOException {
+		Random random = new Random(seed);
+		pool = new byte[POOL_SIZE];
+		random.nextBytes(pool);
+		dirs = new ArrayList<>();
+		uniques = new ArrayList<>();
+		created = new ArrayList<>();
+		Files.createDirectories(root);
+		makeDirs(root, depth);
+		
+		for (int i = 0; i < files; i++) {
+			Path file = dirs.get(random.nextInt(dirs.size())).resolve("file" + i + ".bin");
+			double kind = random.nextDouble();
+			if (!uniques.isEmpty() && kind < dupeRatio) {
+				Path original = uniques.get(random.nextInt(uniques.size()));
+				Files.copy(original, file);
+				dupeCount++;
+			}
+			else if (!uniques.isEmpty() && kind < dupeRatio + sameSizeRatio) {
+				Path original = uniques.get(random.nextInt(uniques.size()));
+				byte[] content = Files.readAllBytes(original);
+				if (content.length > 0)
+					content[unsampledOffset(content.length)] ^= 0x55;
+				Files.write(file, content);
+				sameSizeCount++;
+			}
+			else if (!created.isEmpty() && kind < dupeRatio + sameSizeRatio + linkRatio) {
+				Files.createLink(file, created.get(random.nextInt(created.size())));
+				linkCount++;
+				continue;
+			}
+			else {
+				writeUnique(file, i, nextSize(random), random.nextInt(POOL_SIZE));
+				uniques.add(file);
+				uniqueCount++;
+			}
+			bytes += Files.size(file);
+			created.add(file);
+		}
+	}
+	
+	/**
+	 * This method adds a directory and its subdirectories, down to a
+	 * given number of levels, to the list files are spread over.
+	 */
+	private void makeDirs(Path dir, int levels) throws IOException {
+		dirs.add(dir);
+		if (levels > 0) {
+			for (int i = 0; i < fanout; i++)
+				makeDirs(Files.createDirectories(dir.resolve("dir" + i)), levels - 1);
+		}
+	}
+	
+	/**
+	 * This method returns the offset of a byte the sampler does not
+	 * read at the default sample size, or the middle byte of a file
+	 * too small to be sampled, which is read in full anyway.
+	 */
+	private static int unsampledOffset(int length) {
+		long sampleSize = Sampler.DEFAULT_SAMPLE_SIZE;
+		long last = Math.max(0, length - sampleSize);
+		for (int i = 0; i < Sampler.SAMPLE_POINTS - 1; i++) {
+			long gapStart = last * i / (Sampler.SAMPLE_POINTS - 1) + sampleSize;
+			long gapEnd = last * (i + 1) / (Sampler.SAMPLE_POINTS - 1);
+			if (gapStart < gapEnd)
+				return (int) ((gapStart + gapEnd) / 2);
+		}
+		return length / 2;
+	}
+	
+	/**
+	 * This method picks a size from a log-uniform distribution.
+	 */
+	private long nextSize(Random random) {
+		if (maxSize <= minSize)
+			return minSize;
+		double low = Math.log(Math.max(1, minSize));
+		double high = Math.log(maxSize);
+		return Math.max(minSize, Math.round(Math.exp(low + random.nextDouble() * (high - low))));
+	}
+	
+	/**
+	 * This method writes a file of unique content. Content is read
+	 * from the random pool starting at a given offset, and the id of
+	 * the file is stamped at regular intervals, so no two unique files
+	 * share any large part.
+	 */
+	private void writeUnique(Path file, long id, long size, int offset) throws IOException {
+		byte[] block = new byte[STAMP_INTERVAL];
+		ByteBuffer stamp = ByteBuffer.wrap(block);
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (long written = 0; written < size; written += block.length) {
+				for (int i = 0; i < block.length; i++)
+					block[i] = pool[(offset + i) % POOL_SIZE];
+				offset = (offset + block.length) % POOL_SIZE;
+				stamp.putLong(0, id);
+				stamp.putLong(8, written);
+				out.write(block, 0, (int) Math.min(block.length, size - written));
+			}
+		}
+	}
+	
+	/**
+	 * This method returns a summary of the tree created.
+	 * 
+	 * @param root directory the tree was created in
+	 * @return String representation of the tree as a JSON object
+	 */
+	public String toJson(Path root) {
+		return "{\"root\":\"" + root.toAbsolutePath().toString().replace("\\", "\\\\") + "\"" +
+				",\"seed\":" + seed + ",\"directories\":" + dirs.size() + ",\"files\":" + files +
+				",\"bytes\":" + bytes + ",\"unique\":" + uniqueCount + ",\"duplicates\":" + dupeCount +
+				",\"sameSize\":" + sameSizeCount + ",\"hardLinks\":" + linkCount + "}";
+	}
+}
@@ -0,0 +1,86 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import duplix.Digest;
+
+/**
+ * This class measures the throughput of each digest algorithm
+ * when fed in chunks of a given buffer size. Data is held in a
+ * direct buffer, as it is by Hasher, so no I/O is measured.
+ * Each operation digests 16 MB.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DigestBenchmark {
+	private static final int DATA_SIZE = 16 * 1024 * 1024;
+	
+	@Param({ "XXH64", "SHA-256", "SHA-512/256", "SHA-1", "MD5" })
+	public String algorithm;
+	
+	@Param({ "8192", "65536", "262144", "1048576" })
+	public int bufferSize;
+	
+	private Digest digest;
+	private ByteBuffer data;
+	
+	@Setup
+	public void setup() throws NoSuchAlgorithmException {
+		digest = Digest.getInstance(algorithm);
+		byte[] bytes = new byte[DATA_SIZE];
+		new Random(42).nextBytes(bytes);
+		data = ByteBuffer.allocateDirect(DATA_SIZE);
+		data.put(bytes);
+	}
+	
+	@Benchmark
+	public byte[] digest() {
+		digest.reset();
+		for (int pos = 0; pos < DATA_SIZE; pos += bufferSize) {
+			data.limit(Math.min(pos + bufferSize, DATA_SIZE));
+			data.position(pos);
+			digest.update(data);
+		}
+		data.clear();
+		return digest.digest();
+	}
+}
@@ -0,0 +1,141 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import duplix.DigestIndex;
+import duplix.DupeGroup;
+import duplix.PathTable;
+
+/**
+ * This class compares the time to index a number of hashed files and
+ * list the duplicate groups, with a TreeMap of hex digests to linked
+ * lists of path Strings, a HashMap of raw digests to lists of paths,
+ * and the compact PathTable and DigestIndex. One file in eight is a
+ * copy of the one before it. See IndexFootprint for the heap each uses.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+	static final int DIGEST_LENGTH = 32;
+	
+	@Param({ "10000", "1000000" })
+	public int count;
+	
+	private byte[][] digests;
+	private Path[] paths;
+	
+	@Setup
+	public void setup() {
+		digests = digests(count);
+		paths = new Path[count];
+		for (int i = 0; i < count; i++)
+			paths[i] = path(i);
+	}
+	
+	@Benchmark
+	public int treeMap() {
+		TreeMap<String, LinkedList<String>> map = new TreeMap<>();
+		for (int i = 0; i < count; i++)
+			map.computeIfAbsent(new DupeGroup(digests[i], i, null).getHexDigest(), 
+					k -> new LinkedList<>()).add(paths[i].toString());
+		int groups = 0;
+		for (LinkedList<String> files : map.values()) {
+			if (files.size() > 1)
+				groups++;
+		}
+		return groups;
+	}
+	
+	@Benchmark
+	public int hashMap() {
+		HashMap<ByteBuffer, ArrayList<Path>> map = new HashMap<>();
+		for (int i = 0; i < count; i++)
+			map.computeIfAbsent(ByteBuffer.wrap(digests[i]), k -> new ArrayList<>(2)).add(paths[i]);
+		int groups = 0;
+		for (ArrayList<Path> files : map.values()) {
+			if (files.size() > 1)
+				groups++;
+		}
+		return groups;
+	}
+	
+	@Benchmark
+	public int digestIndex() {
+		PathTable table = new PathTable();
+		DigestIndex index = new DigestIndex(table, DIGEST_LENGTH);
+		for (int i = 0; i < count; i++)
+			index.add(digests[i], table.add(paths[i]), i / 8);
+		return index.getDuplicates().size();
+	}
+	
+	/**
+	 * This method creates a number of random digests, one in eight
+	 * of which equals the one before it.
+	 */
+	static byte[][] digests(int count) {
+		byte[][] digests = new byte[count][];
+		Random random = new Random(42);
+		for (int i = 0; i < count; i++) {
+			if (i % 8 == 7) {
+				digests[i] = digests[i - 1];
+			}
+			else {
+				digests[i] = new byte[DIGEST_LENGTH];
+				random.nextBytes(digests[i]);
+			}
+		}
+		return digests;
+	}
+	
+	/**
+	 * This method returns the path of a file in a synthetic tree.
+	 */
+	static Path path(int i) {
+		return Paths.get("/srv/media", "share" + (i % 16), "album" + (i / 16 % 2048), 
+				"IMG_" + i + ".jpg");
+	}
+}
@@ -0,0 +1,84 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import duplix.DigestIndex;
+import duplix.PathTable;
+
+/**
+ * This class compares the heap used per indexed file by a TreeMap of
+ * hex digests to linked lists of path Strings against the compact
+ * PathTable and DigestIndex. Files are spread over a synthetic tree
+ * with 256-bit digests.
+ * <p>
+ * Usage: java -cp benchmarks.jar duplix.bench.IndexFootprint [number of files]
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class IndexFootprint {
+	private static final int DIGEST_LENGTH = IndexBenchmark.DIGEST_LENGTH;
+	
+	public static void main(String[] args) {
+		int files = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		System.out.println("Files: " + files);
+		
+		long base = usedHeap();
+		TreeMap<String, LinkedList<String>> map = new TreeMap<>();
+		Random random = new Random(42);
+		byte[] digest = new byte[DIGEST_LENGTH];
+		for (int i = 0; i < files; i++) {
+			random.nextBytes(digest);
+			map.computeIfAbsent(toHex(digest), k -> new LinkedList<>()).add(IndexBenchmark.path(i).toString());
+		}
+		long treeMap = usedHeap() - base;
+		System.out.printf("%-26s %8.1f bytes/file%n", "TreeMap<String, LinkedList>", (double) treeMap / files);
+		map = null;
+		
+		base = usedHeap();
+		PathTable paths = new PathTable();
+		DigestIndex index = new DigestIndex(paths, DIGEST_LENGTH);
+		random = new Random(42);
+		for (int i = 0; i < files; i++) {
+			random.nextBytes(digest);
+			index.add(digest, paths.add(IndexBenchmark.path(i)), i);
+		}
+		long compact = usedHeap() - base;
+		System.out.printf("%-26s %8.1f bytes/file (estimated %.1f)%n", "PathTable + DigestIndex", 
+				(double) compact / files, (double) (paths.bytesUsed() + index.bytesUsed()) / files);
+		System.out.println("Duplicate groups: " + index.getDuplicates().size());
+	}
+	
+	private static String toHex(byte[] digest) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest)
+			hex.append(String.format("%02X", b));
+		return hex.toString();
+	}
+	
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
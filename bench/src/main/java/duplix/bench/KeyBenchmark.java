@@ -0,0 +1,87 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class compares keying a map of digests by their hexadecimal
+ * String, as the program once did, against keying it by the raw
+ * digest bytes. Each operation adds every digest to a new map.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyBenchmark {
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	
+	@Param({ "10000", "1000000" })
+	public int count;
+	
+	private byte[][] digests;
+	
+	@Setup
+	public void setup() {
+		digests = IndexBenchmark.digests(count);
+	}
+	
+	@Benchmark
+	public HashMap<String, Integer> hexKeys() {
+		HashMap<String, Integer> map = new HashMap<>();
+		for (int i = 0; i < count; i++)
+			map.put(toHex(digests[i]), i);
+		return map;
+	}
+	
+	@Benchmark
+	public HashMap<ByteBuffer, Integer> rawKeys() {
+		HashMap<ByteBuffer, Integer> map = new HashMap<>();
+		for (int i = 0; i < count; i++)
+			map.put(ByteBuffer.wrap(digests[i]), i);
+		return map;
+	}
+	
+	private static String toHex(byte[] digest) {
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+		}
+		return new String(hex);
+	}
+}
@@ -0,0 +1,123 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import duplix.Digest;
+import duplix.Hasher;
+
+/**
+ * This class compares the ways of reading a file into the default
+ * digest: Files.readAllBytes, a FileChannel read through a reusable
+ * direct buffer, a single memory map of the whole file, and the
+ * Hasher, which picks between the last two by size. The file is
+ * read from the page cache after the first round, so this measures
+ * copying and allocation rather than the disk; run with -prof gc to
+ * see the allocation of each.
+ * <p>
+ * The file is created in java.io.tmpdir unless the duplix.bench.dir
+ * system property names another directory.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+	@Param({ "65536", "1048576", "67108864" })
+	public long fileSize;
+	
+	private Path file;
+	private Digest digest;
+	private Hasher hasher;
+	private ByteBuffer buffer;
+	
+	@Setup
+	public void setup() throws Exception {
+		Path dir = Paths.get(System.getProperty("duplix.bench.dir", System.getProperty("java.io.tmpdir")));
+		file = Corpus.createFile(dir, fileSize);
+		digest = Digest.getInstance(Digest.DEFAULT);
+		hasher = new Hasher(Digest.getInstance(Digest.DEFAULT));
+		buffer = ByteBuffer.allocateDirect(Hasher.BUFFER_SIZE);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+	
+	@Benchmark
+	public byte[] readAllBytes() throws IOException {
+		digest.reset();
+		digest.update(ByteBuffer.wrap(Files.readAllBytes(file)));
+		return digest.digest();
+	}
+	
+	@Benchmark
+	public byte[] channel() throws IOException {
+		digest.reset();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer.clear();
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return digest.digest();
+	}
+	
+	@Benchmark
+	public byte[] mmap() throws IOException {
+		digest.reset();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		return digest.digest();
+	}
+	
+	@Benchmark
+	public byte[] hasher() throws IOException {
+		return hasher.hash(file, fileSize);
+	}
+}
@@ -0,0 +1,182 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs the program end to end against a tree, a number of
+ * times, and writes the results as JSON so runs of different versions
+ * can be compared. Each scan runs in a fresh JVM through ScanProbe,
+ * so no run inherits the heap, JIT state or output of another. The
+ * first run may read from disk; later runs usually read from the page
+ * cache.
+ * <p>
+ * Usage: java -cp benchmarks.jar duplix.bench.ScanHarness [directory]
+ * [-runs count] [-label text] [-o result file] [-jvm option]... [-- program arguments]
+ * <p>
+ * Compare two result files: java -cp benchmarks.jar duplix.bench.ScanHarness -compare [base] [new]
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ScanHarness {
+	private static final String[] KEYS = { "wallMs", "bytesRead", "peakHeapBytes", "gcMs", "gcCount" };
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length == 3 && args[0].equals("-compare")) {
+			compare(read(Paths.get(args[1])), read(Paths.get(args[2])));
+			return;
+		}
+		if (args.length == 0 || args[0].startsWith("-")) {
+			System.err.println("Usage: ScanHarness [directory] [-runs count] [-label text] [-o result file] " + 
+					"[-jvm option]... [-- program arguments]");
+			System.err.println("       ScanHarness -compare [base] [new]");
+			return;
+		}
+		
+		String corpus = args[0];
+		int runs = 5;
+		String label = "";
+		Path output = Paths.get("duplix-bench.json");
+		ArrayList<String> jvmArgs = new ArrayList<>();
+		ArrayList<String> programArgs = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("--")) {
+				programArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+				break;
+			}
+			switch (args[i]) {
+				case "-runs": runs = Integer.parseInt(args[++i]); break;
+				case "-label": label = args[++i]; break;
+				case "-o": output = Paths.get(args[++i]); break;
+				case "-jvm": jvmArgs.add(args[++i]); break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		
+		ArrayList<String> results = new ArrayList<>();
+		for (int run = 1; run <= runs; run++) {
+			String result = runOnce(corpus, jvmArgs, programArgs);
+			System.err.println("Run " + run + ": " + result);
+			results.add(result);
+		}
+		
+		StringBuilder json = new StringBuilder("{");
+		json.append("\"label\":" + quote(label));
+		json.append(",\"date\":" + quote(Instant.now().toString()));
+		json.append(",\"java\":" + quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version")));
+		json.append(",\"os\":" + quote(System.getProperty("os.name") + " " + System.getProperty("os.arch")));
+		json.append(",\"processors\":" + Runtime.getRuntime().availableProcessors());
+		json.append(",\"corpus\":" + quote(Paths.get(corpus).toAbsolutePath().toString()));
+		json.append(",\"jvmArgs\":" + quote(jvmArgs));
+		json.append(",\"args\":" + quote(programArgs));
+		json.append(",\"runs\":[" + String.join(",", results) + "]");
+		json.append(",\"median\":{");
+		for (int k = 0; k < KEYS.length; k++) {
+			long[] values = new long[results.size()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = field(results.get(i), KEYS[k]);
+			Arrays.sort(values);
+			json.append((k > 0 ? "," : "") + "\"" + KEYS[k] + "\":" + values[values.length / 2]);
+		}
+		json.append("}}");
+		Files.write(output, (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+		System.out.println(json);
+	}
+	
+	/**
+	 * This method scans the tree once in a new JVM and returns
+	 * the measurements written by ScanProbe.
+	 */
+	private static String runOnce(String corpus, List<String> jvmArgs, List<String> programArgs) 
+			throws IOException, InterruptedException {
+		Path result = Files.createTempFile("duplix-run", ".json");
+		try {
+			ArrayList<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(jvmArgs);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(ScanProbe.class.getName());
+			command.add(result.toString());
+			command.add(corpus);
+			command.addAll(programArgs);
+			Process process = new ProcessBuilder(command)
+					.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+					.redirectError(ProcessBuilder.Redirect.DISCARD)
+					.start();
+			int exit = process.waitFor();
+			if (exit != 0 || Files.size(result) == 0)
+				throw new IOException("Scan failed with exit code " + exit);
+			return new String(Files.readAllBytes(result), StandardCharsets.UTF_8);
+		} finally {
+			Files.deleteIfExists(result);
+		}
+	}
+	
+	/**
+	 * This method prints the change of each median between two
+	 * result files.
+	 */
+	private static void compare(String base, String next) {
+		String baseMedian = base.substring(base.indexOf("\"median\""));
+		String nextMedian = next.substring(next.indexOf("\"median\""));
+		System.out.printf("%-14s %16s %16s %9s%n", "metric", "base", "new", "change");
+		for (String key : KEYS) {
+			long before = field(baseMedian, key);
+			long after = field(nextMedian, key);
+			String change = before == 0 ? "-" : String.format("%+.1f%%", 100.0 * (after - before) / before);
+			System.out.printf("%-14s %16d %16d %9s%n", key, before, after, change);
+		}
+	}
+	
+	private static String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * This method returns the first number in a JSON text with the
+	 * given key, or -1 if there is none.
+	 */
+	private static long field(String json, String key) {
+		Matcher matcher = Pattern.compile("\"" + key + "\":(-?\\d+)").matcher(json);
+		return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+	}
+	
+	private static String quote(String text) {
+		return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+	
+	private static String quote(List<String> list) {
+		ArrayList<String> quoted = new ArrayList<>();
+		for (String item : list)
+			quoted.add(quote(item));
+		return "[" + String.join(",", quoted) + "]";
+	}
+}
@@ -0,0 +1,89 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import duplix.ArgsParser;
+import duplix.Calculate;
+import duplix.Metrics;
+
+/**
+ * This class runs a single scan in its own JVM for ScanHarness, and
+ * writes what it measured to a file as a JSON object: wall time,
+ * bytes read, peak heap and garbage collection time. Peak heap is
+ * the sum of the peak of each heap pool.
+ * <p>
+ * Usage: java -cp benchmarks.jar duplix.bench.ScanProbe [result file] [program arguments]
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ScanProbe {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ArgsParser parser = new ArgsParser(Arrays.copyOfRange(args, 1, args.length));
+		if (!parser.parseOK) {
+			System.err.println("Invalid parse");
+			System.exit(2);
+		}
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			pool.resetPeakUsage();
+		long gcTime = gcTime(), gcCount = gcCount();
+		
+		long start = System.nanoTime();
+		Calculate calc = new Calculate(parser);
+		calc.start();
+		calc.join();
+		long wall = System.nanoTime() - start;
+		
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP)
+				peakHeap += pool.getPeakUsage().getUsed();
+		}
+		Metrics metrics = calc.getMetrics();
+		String result = "{\"wallMs\":" + wall / 1000000 + ",\"bytesRead\":" + metrics.getBytesRead() +
+				",\"bytesSampled\":" + metrics.getBytesSampled() + ",\"bytesHashed\":" + metrics.getBytesHashed() +
+				",\"filesFound\":" + metrics.getFilesFound() + ",\"filesHashed\":" + metrics.getFilesHashed() +
+				",\"peakHeapBytes\":" + peakHeap + ",\"gcMs\":" + (gcTime() - gcTime) + 
+				",\"gcCount\":" + (gcCount() - gcCount) + ",\"errors\":" + metrics.getErrors() + "}";
+		Files.write(Paths.get(args[0]), result.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+	
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+}
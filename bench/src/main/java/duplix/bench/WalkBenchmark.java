@@ -0,0 +1,108 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix.bench;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import duplix.Walker;
+
+/**
+ * This class compares ways of listing every regular file and its
+ * attributes in a tree: a Files.walk stream, a single-threaded
+ * Files.walkFileTree visitor, and the parallel Walker with a given
+ * number of threads. The tree has 4 levels of 6 subdirectories with
+ * 8 files each, about 12,000 files, and is listed from the dentry
+ * cache after the first round.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalkBenchmark {
+	private Path root;
+	
+	@Setup
+	public void setup() throws IOException {
+		root = Corpus.createTree(4, 6, 8);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		Corpus.delete(root);
+	}
+	
+	@Benchmark
+	public long walkStream() throws IOException {
+		try (Stream<Path> walk = Files.walk(root)) {
+			return walk.filter(Files::isRegularFile).count();
+		}
+	}
+	
+	@Benchmark
+	public long walkFileTree() throws IOException {
+		LongAdder files = new LongAdder();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile())
+					files.increment();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return files.sum();
+	}
+	
+	@Benchmark
+	public long walker(Threads threads) {
+		LongAdder files = new LongAdder();
+		new Walker(threads.threads, true, (file, attrs) -> files.increment(), null).walk(root);
+		return files.sum();
+	}
+	
+	@State(Scope.Benchmark)
+	public static class Threads {
+		@Param({ "1", "4", "16" })
+		public int threads;
+	}
+}
@@ -0,0 +1,305 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class moves and deletes files on a fixed number of worker
+ * threads, so that slow file systems, such as remote mounts, have
+ * several operations in flight at once. Work is handed to the workers
+ * through a bounded queue, like in HashEngine. A move is a rename
+ * whenever source and destination share a file store; only moves 
+ * across file stores copy data, and only a few copies run at once.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ActionExecutor {
+	public static final int QUEUE_SIZE = 1024;
+	public static final int MAX_COPIES = 2;
+	
+	private BlockingQueue<Action> queue;
+	private Thread[] workers;
+	private int pending;
+	private Semaphore copies;
+	private AtomicInteger moved;
+	private AtomicInteger copied;
+	private AtomicInteger deleted;
+	private AtomicInteger movedDirs;
+	private AtomicInteger deletedDirs;
+	private Metrics metrics;
+	
+	/**
+	 * Default and sole constructor starts the worker threads.
+	 * 
+	 * @param threads number of worker threads
+	 * @param metrics metrics to record actions and errors in, or null
+	 */
+	public ActionExecutor(int threads, Metrics metrics) {
+		queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		workers = new Thread[threads];
+		pending = 0;
+		copies = new Semaphore(MAX_COPIES);
+		moved = new AtomicInteger();
+		copied = new AtomicInteger();
+		deleted = new AtomicInteger();
+		movedDirs = new AtomicInteger();
+		deletedDirs = new AtomicInteger();
+		this.metrics = metrics;
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(this::work, "duplix-action-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+	
+	/**
+	 * This method queues a file to be moved to a given directory,
+	 * under a name no other file there has.
+	 * 
+	 * @param path String representation of file path
+	 * @param destDir String representation of destination directory
+	 */
+	public void move(String path, String destDir) {
+		submit(() -> {
+			Path dest = IO.reserveName(destDir, IO.getFileName(path));
+			try {
+				try {
+					IO.renameFile(path, dest);
+				} catch (AtomicMoveNotSupportedException e) {
+					copies.acquire();
+					try {
+						IO.copyFile(path, dest);
+						copied.incrementAndGet();
+					} finally {
+						copies.release();
+					}
+				}
+			} catch (IOException | InterruptedException e) {
+				// give the reserved name back, and leave the original alone
+				Files.deleteIfExists(dest);
+				throw e;
+			}
+			moved.incrementAndGet();
+		});
+	}
+	
+	/**
+	 * This method queues a whole directory to be moved to a given
+	 * directory, under a name no other entry there has.
+	 * 
+	 * @param path String representation of directory path
+	 * @param destDir String representation of destination directory
+	 */
+	public void moveDir(String path, String destDir) {
+		submit(() -> {
+			Path dest = IO.reserveDir(destDir, IO.getFile(path).getFileName().toString());
+			boolean copy = false;
+			try {
+				try {
+					IO.renameFile(path, dest);
+				} catch (AtomicMoveNotSupportedException e) {
+					copy = true;
+					copies.acquire();
+					try {
+						IO.copyTree(path, dest);
+						copied.incrementAndGet();
+					} finally {
+						copies.release();
+					}
+				}
+			} catch (IOException | InterruptedException e) {
+				// give the reserved name back, and leave the original alone
+				IO.deleteTree(dest.toString());
+				throw e;
+			}
+			// the original goes only once its copy is whole
+			if (copy)
+				IO.deleteTree(path);
+			movedDirs.incrementAndGet();
+		});
+	}
+	
+	/**
+	 * This method queues a whole directory to be deleted.
+	 * 
+	 * @param path String representation of directory path
+	 */
+	public void deleteDir(String path) {
+		submit(() -> {
+			IO.deleteTree(path);
+			deletedDirs.incrementAndGet();
+		});
+	}
+	
+	/**
+	 * This method queues a file to be deleted.
+	 * 
+	 * @param path String representation of file path
+	 */
+	public void delete(String path) {
+		submit(() -> {
+			if (IO.deleteFile(path))
+				deleted.incrementAndGet();
+		});
+	}
+	
+	/**
+	 * This method queues an action, waiting for room in the queue
+	 * if every worker is busy and the queue is full.
+	 * 
+	 * @param action action to run on a worker thread
+	 */
+	public void submit(Action action) {
+		synchronized (this) {
+			pending++;
+		}
+		try {
+			queue.put(action);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			finished();
+		}
+	}
+	
+	/**
+	 * This method waits until every action submitted so far has run.
+	 */
+	public synchronized void await() {
+		while (pending > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * This method returns the number of actions waiting for a worker.
+	 * 
+	 * @return depth of the queue
+	 */
+	public long getQueueDepth() {
+		return queue.size();
+	}
+	
+	/**
+	 * This method stops the worker threads once the queue is empty.
+	 */
+	public void shutdown() {
+		await();
+		for (Thread worker : workers)
+			worker.interrupt();
+	}
+	
+	/**
+	 * This method returns the number of files moved.
+	 * 
+	 * @return number of files moved
+	 */
+	public int getMoved() {
+		return moved.get();
+	}
+	
+	/**
+	 * This method returns the number of whole directories moved.
+	 * 
+	 * @return number of directories moved
+	 */
+	public int getMovedDirs() {
+		return movedDirs.get();
+	}
+	
+	/**
+	 * This method returns the number of whole directories deleted.
+	 * 
+	 * @return number of directories deleted
+	 */
+	public int getDeletedDirs() {
+		return deletedDirs.get();
+	}
+	
+	/**
+	 * This method returns the number of files moved by copying them
+	 * to another file store.
+	 * 
+	 * @return number of files copied
+	 */
+	public int getCopied() {
+		return copied.get();
+	}
+	
+	/**
+	 * This method returns the number of files deleted.
+	 * 
+	 * @return number of files deleted
+	 */
+	public int getDeleted() {
+		return deleted.get();
+	}
+	
+	/**
+	 * This method is the main loop of each worker thread.
+	 */
+	private void work() {
+		while (true) {
+			Action action;
+			try {
+				action = queue.take();
+			} catch (InterruptedException e) { return; }
+			long start = System.nanoTime();
+			try {
+				action.run();
+				if (metrics != null)
+					metrics.acted(System.nanoTime() - start);
+			} catch (Exception e) { 
+				System.err.println("Error: " + e.getMessage()); 
+				if (metrics != null)
+					metrics.error();
+			} finally {
+				finished();
+			}
+		}
+	}
+	
+	/**
+	 * This method marks an action as finished.
+	 */
+	private synchronized void finished() {
+		pending--;
+		if (pending == 0)
+			notifyAll();
+	}
+	
+	/**
+	 * A unit of work run on one of the worker threads.
+	 */
+	public interface Action {
+		void run() throws Exception;
+	}
+}
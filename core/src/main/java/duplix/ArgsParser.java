@@ -0,0 +1,806 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class parses user-entered command-line arguments.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ArgsParser {
+	private int pointer;
+	private String prevArg;
+	private boolean destDirDecl;
+	private boolean expFileDecl;
+	private boolean cacheFileDecl;
+	private boolean metricsFileDecl;
+	private boolean minSizeDecl;
+	
+	private String srcDir;
+	private ArrayList<String> srcDirs;
+	private ArrayList<String> refDirs;
+	private Filter filter;
+	private String destDir;
+	private String expFile;
+	private String cacheFile;
+	private String algorithm;
+	private String format;
+	private String metricsFile;
+	
+	private boolean recMode;
+	private boolean delMode;
+	private boolean moveMode;
+	private boolean saveMode;
+	private boolean sampleMode;
+	private boolean cacheMode;
+	private boolean invalidateCache;
+	private boolean strictMode;
+	private boolean watchMode;
+	private boolean linkMode;
+	private boolean reflinkMode;
+	private boolean metricsMode;
+	private boolean workerMode;
+	private boolean dirMode;
+	
+	private int sampleSize;
+	private int threads;
+	private long memoryBudget;
+	private int debounce;
+	private int shards;
+	private int chunkSize;
+	
+	public boolean parseOK;
+	
+	/**
+	 * Initializes variables and ultimately decides whether or 
+	 * not the command-line arguments led to a successful parse.
+	 * 
+	 * @param args user-entered command-line arguments
+	 */
+	public ArgsParser(String[] args) {
+		srcDir = "";
+		srcDirs = new ArrayList<>();
+		refDirs = new ArrayList<>();
+		filter = new Filter();
+		destDir = "";
+		expFile = "";
+		destDirDecl = false;
+		expFileDecl = false;
+		cacheFile = "";
+		cacheFileDecl = false;
+		algorithm = Digest.DEFAULT;
+		format = ReportWriter.TEXT;
+		metricsFile = "";
+		metricsFileDecl = false;
+		minSizeDecl = false;
+		
+		recMode = true;
+		delMode = false;
+		moveMode = false;
+		saveMode = false;
+		sampleMode = true;
+		cacheMode = false;
+		invalidateCache = false;
+		strictMode = false;
+		sampleSize = Sampler.DEFAULT_SAMPLE_SIZE;
+		threads = Runtime.getRuntime().availableProcessors();
+		memoryBudget = 0;
+		watchMode = false;
+		linkMode = false;
+		reflinkMode = false;
+		metricsMode = false;
+		workerMode = false;
+		dirMode = false;
+		debounce = Watcher.DEFAULT_DEBOUNCE;
+		shards = 1;
+		chunkSize = 0;
+		
+		if (args.length > 0) {
+			pointer = 0;
+			srcDir = args[pointer];
+			srcDirs.add(srcDir);
+			advPointer();
+			// any other directories before the first option are scanned too
+			while (pointer < args.length && !args[pointer].startsWith("-")) {
+				srcDirs.add(args[pointer]);
+				advPointer();
+			}
+			prevArg = srcDirs.get(srcDirs.size() - 1);
+			if (IO.exists(srcDir)) {
+				parseOK = true;
+				if (args.length > pointer) {
+					recArgs(Arrays.copyOfRange(args, pointer, args.length));
+					if (moveMode) {
+						if (delMode)
+							delMode = false;
+						if (!destDirDecl)
+							destDir = IO.mkDefaultDir();
+					}
+					if (linkMode && (moveMode || delMode))
+						parseOK = false;
+					// watch mode only reports, and keeps its index in memory
+					if (watchMode && (moveMode || delMode || linkMode || memoryBudget > 0 || loadMode() ||
+							format.equals(ReportWriter.CSV) || format.equals(ReportWriter.BIN)))
+						parseOK = false;
+				}
+				for (String dir : srcDirs) {
+					if (!IO.exists(dir))
+						parseOK = false;
+				}
+				for (String dir : refDirs) {
+					if (!IO.exists(dir))
+						parseOK = false;
+				}
+				// a report holds only duplicates, so it cannot be checked against other roots
+				if (loadMode() && (srcDirs.size() > 1 || !refDirs.isEmpty()))
+					parseOK = false;
+				// whole directories are moved or deleted, never linked, and need the full tree in memory
+				if (dirMode && (linkMode || watchMode || memoryBudget > 0 || shards > 1 || loadMode()))
+					parseOK = false;
+				// empty files tell directories apart, so they are only skipped if asked to
+				if (dirMode && !minSizeDecl)
+					filter.setMinSize(0);
+				// a sharded scan only reports, and keeps no state but its results
+				if (shards > 1 && (moveMode || delMode || linkMode || watchMode || cacheMode || strictMode ||
+						metricsMode || memoryBudget > 0 || loadMode() || !refDirs.isEmpty()))
+					parseOK = false;
+				// chunk mode only reports, and has no groups of duplicates to write
+				if (chunkSize > 0 && (moveMode || delMode || linkMode || watchMode || cacheMode || strictMode ||
+						dirMode || shards > 1 || loadMode() || !refDirs.isEmpty() || 
+						format.equals(ReportWriter.CSV) || format.equals(ReportWriter.BIN)))
+					parseOK = false;
+			} else parseOK = false;
+		} else parseOK = false;
+	}
+	
+	/**
+	 * This method simply advances the pointer variable.
+	 */
+	private void advPointer() {
+		pointer++;
+	}
+	
+	/**
+	 * This method recurses through the user-entered command-line 
+	 * arguments to decide which modes should be turned on. 
+	 * 
+	 * @param args user-entered command-line arguments
+	 */
+	private void recArgs(String[] args) {
+		if (args.length == 0)
+			return;
+		
+		pointer = 0;
+		switch (args[pointer]) {
+			case "-m":
+				moveMode = true;
+				prevArg = "-m";
+				break;
+			case "-d":
+				delMode = true;
+				prevArg = "-d";
+				break;
+			case "-s":
+				saveMode = true;
+				prevArg = "-s";
+				break;
+			case "-r":
+				recMode = false;
+				prevArg = "-r";
+				break;
+			case "-p":
+				sampleMode = false;
+				prevArg = "-p";
+				break;
+			case "-ps":
+				prevArg = "-ps";
+				break;
+			case "-t":
+				prevArg = "-t";
+				break;
+			case "-a":
+				prevArg = "-a";
+				break;
+			case "-v":
+				strictMode = true;
+				prevArg = "-v";
+				break;
+			case "-mem":
+				prevArg = "-mem";
+				break;
+			case "-f":
+				prevArg = "-f";
+				break;
+			case "-l":
+				linkMode = true;
+				prevArg = "-l";
+				break;
+			case "-lr":
+				linkMode = true;
+				reflinkMode = true;
+				prevArg = "-lr";
+				break;
+			case "-j":
+				metricsMode = true;
+				prevArg = "-j";
+				break;
+			case "-w":
+				watchMode = true;
+				prevArg = "-w";
+				break;
+			case "-c":
+				cacheMode = true;
+				prevArg = "-c";
+				break;
+			case "-ref":
+				prevArg = "-ref";
+				break;
+			case "-i":
+			case "-x":
+			case "-ir":
+			case "-xr":
+			case "-prune":
+			case "-min":
+			case "-max":
+			case "-after":
+			case "-before":
+				prevArg = args[pointer];
+				break;
+			case "-nh":
+				filter.setSkipHidden(true);
+				prevArg = "-nh";
+				break;
+			case "-shards":
+				prevArg = "-shards";
+				break;
+			case "-dirs":
+				dirMode = true;
+				prevArg = "-dirs";
+				break;
+			case "-chunks":
+				chunkSize = Chunker.DEFAULT_AVERAGE;
+				prevArg = "-chunks";
+				break;
+			case "-worker":
+				workerMode = true;
+				prevArg = "-worker";
+				break;
+			case "-ci":
+				cacheMode = true;
+				invalidateCache = true;
+				prevArg = "-ci";
+				break;
+			default:
+				switch (prevArg) {
+					case "-m":
+						destDir = args[pointer];
+						prevArg = destDir;
+						destDirDecl = true;
+						break;
+					case "-s":
+						expFile = args[pointer];
+						prevArg = expFile;
+						expFileDecl = true;
+						break;
+					case "-mem":
+						try {
+							memoryBudget = Math.multiplyExact(Long.parseLong(args[pointer]), 1024 * 1024);
+							if (memoryBudget <= 0)
+								parseOK = false;
+						} catch (NumberFormatException | ArithmeticException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-ref":
+						refDirs.add(args[pointer]);
+						prevArg = args[pointer];
+						break;
+					case "-i":
+					case "-x":
+					case "-ir":
+					case "-xr":
+					case "-prune":
+						try {
+							if (prevArg.equals("-i"))
+								filter.include(args[pointer]);
+							else if (prevArg.equals("-x"))
+								filter.exclude(args[pointer]);
+							else if (prevArg.equals("-ir"))
+								filter.includeRegex(args[pointer]);
+							else if (prevArg.equals("-xr"))
+								filter.excludeRegex(args[pointer]);
+							else
+								filter.prune(args[pointer]);
+						} catch (IllegalArgumentException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-min":
+					case "-max":
+						try {
+							long size = parseSize(args[pointer]);
+							if (prevArg.equals("-min")) {
+								filter.setMinSize(size);
+								minSizeDecl = true;
+							}
+							else
+								filter.setMaxSize(size);
+						} catch (NumberFormatException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-after":
+					case "-before":
+						try {
+							long time = new SimpleDateFormat("yyyy-MM-dd").parse(args[pointer]).getTime();
+							if (prevArg.equals("-after"))
+								filter.setModifiedAfter(time);
+							else
+								filter.setModifiedBefore(time);
+						} catch (ParseException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-j":
+						metricsFile = args[pointer];
+						prevArg = metricsFile;
+						metricsFileDecl = true;
+						break;
+					case "-shards":
+						try {
+							shards = Integer.parseInt(args[pointer]);
+							if (shards <= 0)
+								parseOK = false;
+						} catch (NumberFormatException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-chunks":
+						try {
+							long size = parseSize(args[pointer]);
+							if (size < Chunker.MIN_AVERAGE || size > Chunker.MAX_AVERAGE)
+								parseOK = false;
+							else
+								chunkSize = (int) size;
+						} catch (NumberFormatException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-w":
+						try {
+							debounce = Integer.parseInt(args[pointer]);
+							if (debounce <= 0)
+								parseOK = false;
+						} catch (NumberFormatException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-f":
+						format = args[pointer].toLowerCase();
+						if (!ReportWriter.isFormat(format))
+							parseOK = false;
+						prevArg = format;
+						break;
+					case "-a":
+						algorithm = args[pointer].toUpperCase();
+						prevArg = algorithm;
+						break;
+					case "-c":
+					case "-ci":
+						cacheFile = args[pointer];
+						prevArg = cacheFile;
+						cacheFileDecl = true;
+						break;
+					case "-ps":
+						try {
+							sampleSize = Integer.parseInt(args[pointer]);
+							if (sampleSize <= 0)
+								parseOK = false;
+						} catch (NumberFormatException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					case "-t":
+						try {
+							threads = Integer.parseInt(args[pointer]);
+							if (threads <= 0)
+								parseOK = false;
+						} catch (NumberFormatException e) { parseOK = false; }
+						prevArg = args[pointer];
+						break;
+					default:
+						parseOK = false;
+						break;
+				}
+				break;
+		}
+		advPointer();
+		
+		if (pointer < args.length)
+			recArgs(Arrays.copyOfRange(args, pointer, args.length));
+	}
+	
+	/**
+	 * This method parses a size in bytes, optionally followed by K, M
+	 * or G for kibibytes, mebibytes or gibibytes.
+	 * 
+	 * @param arg user-entered size
+	 * @return size in bytes
+	 * @throws NumberFormatException if the size is invalid, negative or too large
+	 */
+	private static long parseSize(String arg) {
+		String upper = arg.toUpperCase();
+		int shift = 0;
+		if (upper.endsWith("K"))
+			shift = 10;
+		else if (upper.endsWith("M"))
+			shift = 20;
+		else if (upper.endsWith("G"))
+			shift = 30;
+		long size = Long.parseLong(shift == 0 ? upper : upper.substring(0, upper.length() - 1));
+		if (size < 0)
+			throw new NumberFormatException("Negative size: " + arg);
+		if (size > Long.MAX_VALUE >> shift)
+			throw new NumberFormatException("Size too large: " + arg);
+		return size << shift;
+	}
+	
+	/**
+	 * This method returns the path of the user-entered source directory.
+	 * 
+	 * @return String representation of source directory
+	 */
+	public String getSrcDir() {
+		return srcDir;
+	}
+	
+	/**
+	 * This method returns the paths of every directory to scan, the
+	 * source directory first.
+	 * 
+	 * @return String representations of the directories to scan
+	 */
+	public List<String> getSrcDirs() {
+		return srcDirs;
+	}
+	
+	/**
+	 * This method returns the paths of the reference directories.
+	 * Files in them are scanned like any other, but never moved,
+	 * deleted or replaced.
+	 * 
+	 * @return String representations of the reference directories
+	 */
+	public List<String> getRefDirs() {
+		return refDirs;
+	}
+	
+	/**
+	 * This method returns the filter built from the user-entered
+	 * include, exclude, prune, size, date and hidden options.
+	 * 
+	 * @return filter to walk with
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+	
+	/**
+	 * This method returns the path of the destination directory.
+	 * 
+	 * @return String representation of destination directory
+	 */
+	public String getDestDir() {
+		if (IO.dirExists(destDir))
+			return destDir;
+		return "";
+	}
+	
+	/**
+	 * This method returns the path of the export file.
+	 * 
+	 * @return String representation of export file
+	 */
+	public String getExpFile() {
+		if (saveMode) {
+			if (expFileDecl) {
+				IO.dirExists(IO.getFilePath(expFile));
+				return expFile;
+			}
+			else {
+				String date = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+				String ext = format.equals(ReportWriter.TEXT) ? "txt" : format;
+				String dir = loadMode() ? IO.getFilePath(srcDir) : srcDir + File.separator;
+				return dir + "duplix-" + date.toString() + "." + ext;
+			}
+		}
+		return "";
+	}
+	/**
+	 * This method returns a boolean value indicating whether recursive
+	 * file-search mode is on or off. True for on, false for off. 
+	 * 
+	 * @return boolean value indicating if recursion mode is on or off
+	 */
+	public boolean recursiveMode() {
+		return recMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether 
+	 * export-results-to-file (save) mode is on or off.
+	 * True indicates on, false indicates off. 
+	 * 
+	 * @return boolean value indicating if save mode is on or off
+	 */
+	public boolean saveMode() {
+		return saveMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether
+	 * file-move mode is on or off. True is on, false is off.
+	 * 
+	 * @return boolean value indicating if move mode is on or off
+	 */
+	public boolean moveMode() {
+		return moveMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether
+	 * file-deletion mode is on or off. True is on, false is off.
+	 * 
+	 * @return boolean value indicating if delete mode is on or off
+	 */
+	public boolean deleteMode() {
+		return delMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether the
+	 * sample prefilter is on or off. True is on, false is off.
+	 * 
+	 * @return boolean value indicating if sample mode is on or off
+	 */
+	public boolean sampleMode() {
+		return sampleMode;
+	}
+	
+	/**
+	 * This method returns the number of bytes read at each
+	 * sample point by the sample prefilter.
+	 * 
+	 * @return sample size in bytes
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+	
+	/**
+	 * This method returns the number of hashing threads.
+	 * Defaults to the number of available processors.
+	 * 
+	 * @return number of hashing threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether the
+	 * persistent hash cache is on or off. True is on, false is off.
+	 * 
+	 * @return boolean value indicating if cache mode is on or off
+	 */
+	public boolean cacheMode() {
+		return cacheMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether the
+	 * existing hash cache should be discarded before the scan.
+	 * 
+	 * @return boolean value indicating if the cache is invalidated
+	 */
+	public boolean invalidateCache() {
+		return invalidateCache;
+	}
+	
+	/**
+	 * This method returns the path of the hash cache file.
+	 * 
+	 * @return String representation of cache file
+	 */
+	public String getCacheFile() {
+		if (cacheFileDecl)
+			return cacheFile;
+		return System.getProperty("user.home") + File.separator + ".duplix-cache";
+	}
+	
+	/**
+	 * This method returns the name of the digest algorithm
+	 * files are hashed with.
+	 * 
+	 * @return name of the digest algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether strict
+	 * (byte-for-byte verification) mode is on or off.
+	 * True is on, false is off.
+	 * 
+	 * @return boolean value indicating if strict mode is on or off
+	 */
+	public boolean strictMode() {
+		return strictMode;
+	}
+	
+	/**
+	 * This method returns the memory budget of spill mode. When it
+	 * is set, scan records beyond the budget are sorted to disk. In
+	 * chunk mode, it is the budget of the chunk store.
+	 * 
+	 * @return memory budget in bytes, or 0 if spill mode is off
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	/**
+	 * This method returns the name of the output format.
+	 * 
+	 * @return name of the output format
+	 */
+	public String getFormat() {
+		return format;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether the
+	 * source is a binary report to load groups from rather than a
+	 * directory to scan.
+	 * 
+	 * @return boolean value indicating if load mode is on or off
+	 */
+	public boolean loadMode() {
+		return ReportReader.isReport(IO.getFile(srcDir));
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether watch
+	 * mode is on or off. In watch mode, the tree is watched for 
+	 * changes after the initial scan.
+	 * 
+	 * @return boolean value indicating if watch mode is on or off
+	 */
+	public boolean watchMode() {
+		return watchMode;
+	}
+	
+	/**
+	 * This method returns the time watch mode waits for events to
+	 * stop arriving before it handles them.
+	 * 
+	 * @return debounce delay in milliseconds
+	 */
+	public int getDebounce() {
+		return debounce;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether link
+	 * mode is on or off. In link mode, duplicate files are replaced
+	 * with links to the copy that is kept.
+	 * 
+	 * @return boolean value indicating if link mode is on or off
+	 */
+	public boolean linkMode() {
+		return linkMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether link
+	 * mode makes copy-on-write clones rather than hard links.
+	 * 
+	 * @return boolean value indicating if reflink mode is on or off
+	 */
+	public boolean reflinkMode() {
+		return reflinkMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether a JSON
+	 * summary of the metrics of the run is saved at the end.
+	 * 
+	 * @return boolean value indicating if metrics mode is on or off
+	 */
+	public boolean metricsMode() {
+		return metricsMode;
+	}
+	
+	/**
+	 * This method returns the number of worker processes to share
+	 * the scan among.
+	 * 
+	 * @return number of shards, 1 for a scan in this process only
+	 */
+	public int getShards() {
+		return shards;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether directory
+	 * mode is on or off. In directory mode, identical directory trees 
+	 * are reported, and acted on, as single groups.
+	 * 
+	 * @return boolean value indicating if directory mode is on or off
+	 */
+	public boolean dirMode() {
+		return dirMode;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether chunk
+	 * mode is on or off. In chunk mode, files are split into chunks
+	 * of variable size, and the chunks files share are reported 
+	 * rather than whole duplicate files.
+	 * 
+	 * @return boolean value indicating if chunk mode is on or off
+	 */
+	public boolean chunkMode() {
+		return chunkSize > 0;
+	}
+	
+	/**
+	 * This method returns the average chunk size of chunk mode.
+	 * 
+	 * @return average size of a chunk in bytes, or 0 if chunk mode
+	 * is off
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * This method returns a boolean value indicating whether this
+	 * process is a worker of a sharded scan, started by a Coordinator.
+	 * 
+	 * @return boolean value indicating if worker mode is on or off
+	 */
+	public boolean workerMode() {
+		return workerMode;
+	}
+	
+	/**
+	 * This method returns the path of the metrics summary file.
+	 * 
+	 * @return String representation of metrics file
+	 */
+	public String getMetricsFile() {
+		if (metricsFileDecl) {
+			IO.dirExists(IO.getFilePath(metricsFile));
+			return metricsFile;
+		}
+		return System.getProperty("user.dir") + File.separator + "duplix-metrics.json";
+	}
+}
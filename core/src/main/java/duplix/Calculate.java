@@ -0,0 +1,1527 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class drives the scan in its own thread (separate from the
+ * main thread). Files found by a Walker are grouped by size as they
+ * are discovered, and only files sharing a size with another file are
+ * hashed, on the worker threads of a HashEngine. In chunk mode, every
+ * file is split into chunks on those workers instead, and the chunks
+ * files share are reported. It also provides additional functionality
+ * regarding output of duplicate files.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Calculate extends Thread {
+	public static final int BATCH_SIZE = 1024;
+	public static final int SPILL_BATCH_FILES = 4096;
+	public boolean isFinished;
+	
+	private PathTable paths;
+	private DigestIndex map;
+	private ConcurrentHashMap<Long, SizeGroup> sizeMap;
+	private int dupeCounter;
+	private AtomicInteger linkCounter;
+	private AtomicInteger linkSkipped;
+	private AtomicInteger linkFailed;
+	private AtomicInteger hardLinks;
+	private long reclaimable;
+	private long sizeSkipped;
+	private long sampleSkipped;
+	private long refSkipped;
+	private int refKept;
+	private int unconfirmed;
+	private int unreadable;
+	private boolean cryptographic;
+	private Set<String> verified;
+	private HashEngine engine;
+	private HashEngine confirmEngine;
+	private ActionExecutor actions;
+	private Walker walker;
+	private Sampler sampler;
+	private HashCache cache;
+	private Path spillDir;
+	private PathSpill pathSpill;
+	private SpillSorter sizeRuns;
+	private SpillSorter digestRuns;
+	private HashMap<Long, ArrayList<Long>> spillAliases;
+	private int digestWidth;
+	private int digestLength;
+	private ReportReader reader;
+	private Watcher watcher;
+	private Metrics metrics;
+	private PrintStream console;
+	private ArgsParser p;
+	private Path root;
+	private ArrayList<Path> roots;
+	private ArrayList<Path> refRoots;
+	private DirTree tree;
+	private ChunkStore chunks;
+	private Set<Object> linkedKeys;
+	private HashSet<Path> keptDirs;
+	private int dirGroups;
+	private int foldedGroups;
+	private ReportWriter report;
+	private String expFile;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param parser instance of ArgsParser
+	 */
+	public Calculate(ArgsParser parser) {
+		p = parser;
+		dupeCounter = 0;
+		linkCounter = new AtomicInteger();
+		linkSkipped = new AtomicInteger();
+		linkFailed = new AtomicInteger();
+		hardLinks = new AtomicInteger();
+		reclaimable = 0;
+		sizeSkipped = 0;
+		sampleSkipped = 0;
+		refSkipped = 0;
+		refKept = 0;
+		unconfirmed = 0;
+		unreadable = 0;
+		verified = ConcurrentHashMap.newKeySet();
+		isFinished = false;
+		paths = new PathTable();
+		sizeMap = new ConcurrentHashMap<>();
+		expFile = p.saveMode() ? p.getExpFile() : null;
+		console = p.getFormat().equals(ReportWriter.TEXT) ? System.out : System.err;
+		root = IO.getFile(p.getSrcDir());
+		refRoots = new ArrayList<>();
+		for (String dir : p.getRefDirs())
+			refRoots.add(IO.getFile(dir).toAbsolutePath().normalize());
+		roots = getRoots();
+		keptDirs = new HashSet<>();
+		dirGroups = 0;
+		foldedGroups = 0;
+		if (p.dirMode())
+			tree = new DirTree(p.getAlgorithm());
+		metrics = new Metrics();
+		metrics.register();
+		if (p.sampleMode())
+			sampler = new Sampler(p.getSampleSize());
+		if (p.cacheMode())
+			cache = new HashCache(p.getCacheFile(), p.getAlgorithm(), p.invalidateCache());
+		
+		try {
+			engine = new HashEngine(p.getThreads(), p.getAlgorithm(), p.getSampleSize(), metrics);
+			metrics.setHashQueue(engine::getQueueDepth);
+			metrics.setDevices(engine::getDevices);
+			Digest digest = Digest.getInstance(p.getAlgorithm());
+			cryptographic = digest.isCryptographic();
+			map = new DigestIndex(paths, digest.getLength());
+			digestLength = digest.getLength();
+			digestWidth = 2 + (digestLength + 7) / 8;
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println(e.getMessage());
+			System.exit(0);
+		}
+		
+		if (p.watchMode()) {
+			try {
+				watcher = new Watcher(p.recursiveMode(), p.getDebounce(), engine, p.getFilter());
+			} catch (IOException e) {
+				System.err.println("Error: " + e.getMessage());
+				System.exit(0);
+			}
+			walker = new Walker(p.getThreads(), p.recursiveMode(), new Walker.Sink() {
+				public void file(Path file, BasicFileAttributes attrs) {
+					addBySize(file, attrs);
+				}
+				
+				public void directory(Path dir) {
+					watcher.register(dir);
+				}
+			}, metrics);
+		}
+		else if (tree != null) {
+			walker = new Walker(p.getThreads(), p.recursiveMode(), new Walker.Sink() {
+				public void file(Path file, BasicFileAttributes attrs) {
+					// empty files tell directories apart, but never form groups of their own
+					if (attrs.size() == 0)
+						tree.emptyFile(file);
+					else {
+						tree.file(file);
+						addBySize(file, attrs);
+					}
+				}
+				
+				public void directory(Path dir) {
+					tree.directory(dir);
+				}
+				
+				public void incomplete(Path dir) {
+					tree.incomplete(dir);
+				}
+			}, metrics);
+		}
+		else if (p.chunkMode())
+			walker = new Walker(p.getThreads(), p.recursiveMode(), this::addChunked, metrics);
+		else
+			walker = new Walker(p.getThreads(), p.recursiveMode(), this::addBySize, metrics);
+		walker.setFilter(p.getFilter());
+		
+		if (p.chunkMode()) {
+			try {
+				chunks = new ChunkStore(roots.size(), 
+						p.getMemoryBudget() > 0 ? p.getMemoryBudget() : ChunkStore.DEFAULT_MEMORY);
+				linkedKeys = ConcurrentHashMap.newKeySet();
+			} catch (IOException e) {
+				System.err.println("Error: " + e.getMessage());
+				System.exit(0);
+			}
+		}
+		else if (p.getMemoryBudget() > 0) {
+			try {
+				spillDir = Files.createTempDirectory("duplix-spill");
+				pathSpill = new PathSpill(spillDir);
+				sizeRuns = new SpillSorter(spillDir, "sizes", 3, p.getMemoryBudget() / 2);
+				digestRuns = new SpillSorter(spillDir, "digests", digestWidth, p.getMemoryBudget() / 2);
+				spillAliases = new HashMap<>();
+			} catch (IOException e) {
+				System.err.println("Error: " + e.getMessage());
+				System.exit(0);
+			}
+		}
+	}
+	
+	/**
+	 * This method initiates the scan process and produces
+	 * results in accordance with the user-entered command-line
+	 * arguments. 
+	 */
+	@Override
+	public void run() {
+		if (p.loadMode()) {
+			metrics.setStage("load");
+			console.println("Loading " + root + "...");
+			try {
+				reader = new ReportReader(root);
+				cryptographic = Digest.getInstance(reader.getAlgorithm()).isCryptographic();
+			} catch (IOException e) {
+				System.err.println("Error: " + e.getMessage());
+				System.exit(0);
+			} catch (NoSuchAlgorithmException e) { cryptographic = false; }
+		}
+		else {
+			console.println("Beginning scan...");
+			metrics.setStage("walk");
+			walker.walk(roots);
+			metrics.setStage("hash");
+			if (chunks != null)
+				engine.await();
+			else if (sizeRuns != null)
+				hashSpilled();
+			else
+				hashCandidates();
+		}
+		if (cache != null)
+			cache.close();
+		
+		String destDir = p.moveMode() ? p.getDestDir() : null;
+		if (p.moveMode() || p.deleteMode() || p.linkMode()) {
+			actions = new ActionExecutor(p.getThreads(), metrics);
+			metrics.setActionQueue(actions::getQueueDepth);
+		}
+		metrics.setStage("report");
+		Iterator<DupeGroup> groups = getListOfDupes();
+		if (tree != null)
+			groups = getListOfDirs(groups).iterator();
+		while (groups.hasNext()) {
+			ArrayList<DupeGroup> list = new ArrayList<>();
+			while (groups.hasNext() && list.size() < BATCH_SIZE)
+				list.add(groups.next());
+			if (tree == null)
+				list = checkDupes(list);
+			dupeCounter += list.size();
+			for (DupeGroup group : list) {
+				reclaimable += group.getReclaimable();
+				refKept += group.getReferences();
+			}
+			if (watcher != null) {
+				for (DupeGroup group : list)
+					watcher.seed(group);
+			}
+			
+			if (p.moveMode()) {
+				for (DupeGroup group : list) {
+					LinkedList<String> subList = group.getFiles();
+					for (int i = 0; i < subList.size() - group.getReferences(); i++) {
+						if (group.isDirectory()) {
+							actions.moveDir(subList.get(i), destDir);
+							continue;
+						}
+						actions.move(subList.get(i), destDir);
+						for (String alias : group.getAliases(subList.get(i))) {
+							if (!isReference(alias))
+								actions.move(alias, destDir);
+						}
+					}
+				}
+				actions.await();
+				outputDupes(list);
+			}
+			else if (p.deleteMode()) {
+				for (DupeGroup group : list) {
+					LinkedList<String> subList = group.getFiles();
+					// the space of a file is only freed once every link to it is gone
+					for (int i = 0; i < subList.size() - group.getKept(); i++) {
+						if (group.isDirectory()) {
+							actions.deleteDir(subList.get(i));
+							continue;
+						}
+						actions.delete(subList.get(i));
+						for (String alias : group.getAliases(subList.get(i))) {
+							if (!isReference(alias))
+								actions.delete(alias);
+						}
+					}
+				}
+				actions.await();
+				outputDupesMarked(list);
+			}
+			else if (p.linkMode()) {
+				for (DupeGroup group : list)
+					actions.submit(() -> linkDupes(group));
+				actions.await();
+				outputDupesMarked(list);
+			}
+			else {
+				outputDupes(list);
+			}
+			if (report != null)
+				report.flush();
+		}
+		if (confirmEngine != null)
+			confirmEngine.shutdown();
+		if (actions != null)
+			actions.shutdown();
+		closeSpill();
+		
+		isFinished = true;
+		
+		if (chunks != null)
+			outputChunks();
+		else if (dupeCounter == 0) {
+			console.println("No duplicate files found!");
+			console.print(stageStats());
+		}
+		else {		
+			StringBuilder stats = new StringBuilder();
+			stats.append("Final stats: " + dupeCounter + 
+					" sets of duplicate files found." + System.lineSeparator());
+			
+			if (p.moveMode()) {
+				stats.append(actions.getMoved() + " files " + 
+					(actions.getMovedDirs() > 0 ? "and " + actions.getMovedDirs() + " directories " : "") +
+					"moved to " + destDir + 
+					(actions.getCopied() > 0 ? " (" + actions.getCopied() + " copied across file systems)" : "") +
+					System.lineSeparator());
+			}
+			else if (p.deleteMode()) {
+				stats.append(actions.getDeleted() + " files " + 
+					(actions.getDeletedDirs() > 0 ? "and " + actions.getDeletedDirs() + " directories " : "") +
+					"deleted." +
+					System.lineSeparator());
+			}
+			else if (p.linkMode()) {
+				stats.append(linkCounter + " files replaced with " + 
+					(p.reflinkMode() ? "clones" : "hard links") + ", " + linkSkipped + 
+					" were already linked" + (linkFailed.get() > 0 ? ", " + linkFailed + " failed" : "") +
+					"." + System.lineSeparator());
+			}
+			stats.append(reclaimable + " bytes taken up by duplicate copies." + System.lineSeparator());
+			stats.append(stageStats());
+			if (report.isText())
+				report.write(stats.toString());
+			else
+				console.print(stats.toString());
+		}
+		
+		if (watcher != null) {
+			if (report == null)
+				report = new ReportWriter(expFile, p.getFormat(), getAlgorithm());
+			report.flush();
+			console.println("Watching " + (roots.size() == 1 ? roots.get(0) : roots) + " for changes...");
+			metrics.setStage("watch");
+			watcher.watch(report);
+			console.println("Stopped watching after " + watcher.getEventCount() + " events.");
+		}
+		engine.shutdown();
+		
+		if (report != null) {
+			if (report.close() && p.saveMode())
+				console.println("File saved to " + expFile);
+			else if (p.saveMode())
+				console.println("Unable to save to " + expFile);
+		}
+		metrics.setStage("done");
+		if (p.metricsMode()) {
+			try {
+				Files.write(IO.getFile(p.getMetricsFile()), 
+						(metrics.toJson() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+				console.println("Metrics saved to " + p.getMetricsFile());
+			} catch (IOException e) { console.println("Unable to save to " + p.getMetricsFile()); }
+		}
+	}
+	
+	/**
+	 * This method returns the metrics of the scan.
+	 * 
+	 * @return metrics of the scan
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * This method replaces every file of a group but the last, and
+	 * their aliases, with a link to the last. Files already linked to 
+	 * it are skipped. Files on another file store than the last cannot
+	 * link to it, so they are linked among themselves instead, to the
+	 * last of them. When the group has reference files, those are
+	 * never replaced, but are linked to first, one store at a time.
+	 * 
+	 * @param group group of duplicate files
+	 */
+	private void linkDupes(DupeGroup group) {
+		LinkedList<String> pending = new LinkedList<>();
+		LinkedList<String> targets = new LinkedList<>();
+		LinkedList<String> files = group.getFiles();
+		for (int i = 0; i < files.size(); i++) {
+			if (i < files.size() - group.getReferences())
+				pending.add(files.get(i));
+			else
+				targets.add(files.get(i));
+			for (String alias : group.getAliases(files.get(i))) {
+				if (!isReference(alias))
+					pending.add(alias);
+			}
+		}
+		while (!pending.isEmpty() && (!targets.isEmpty() || pending.size() > 1)) {
+			String target = targets.isEmpty() ? pending.removeLast() : targets.removeLast();
+			LinkedList<String> otherStore = new LinkedList<>();
+			for (String item : pending) {
+				if (IO.sameFile(item, target)) {
+					linkSkipped.incrementAndGet();
+					continue;
+				}
+				switch (IO.linkFile(item, target, p.reflinkMode())) {
+					case IO.LINKED:
+						linkCounter.incrementAndGet();
+						break;
+					case IO.CROSS_DEVICE:
+						otherStore.add(item);
+						break;
+					default:
+						linkFailed.incrementAndGet();
+						break;
+				}
+			}
+			pending = otherStore;
+		}
+	}
+	
+	/**
+	 * This method stops watch mode, if it is on, so that the scan
+	 * thread can write out the rest of the report and finish.
+	 */
+	public void stopWatching() {
+		if (watcher != null)
+			watcher.close();
+	}
+	
+	/**
+	 * This method returns the stream progress messages are printed
+	 * to. Outside text format, that is standard error, so standard
+	 * output holds only results.
+	 * 
+	 * @return stream for progress messages
+	 */
+	public PrintStream getConsole() {
+		return console;
+	}
+
+	/**
+	 * This method receives each file discovered by the walk and adds
+	 * it to the size map. Once a size is shared by two files, those
+	 * files, and any found later with the same size, are queued for
+	 * sampling straight away. In spill mode, the file is written to
+	 * the size runs instead, with the hash of its file key so that
+	 * hard links can be told apart later. Called from several walker
+	 * threads.
+	 * 
+	 * @param file file discovered during the scan
+	 * @param attrs attributes of the file
+	 */
+	private void addBySize(Path file, BasicFileAttributes attrs) {
+		long size = attrs.size();
+		metrics.found(size);
+		if (sizeRuns != null) {
+			try {
+				Object key = attrs.fileKey();
+				sizeRuns.add(new long[] { size, key != null ? Integer.toUnsignedLong(key.hashCode()) : -1, 
+						pathSpill.add(file) });
+			} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+			return;
+		}
+		if (watcher != null)
+			watcher.seed(file, size, attrs.fileKey());
+		SizeGroup group = sizeMap.computeIfAbsent(size, 
+				k -> new SizeGroup(paths, size, sampler != null && sampler.worthSampling(size)));
+		byte[] digest = cache != null ? cache.lookup(file, attrs) : null;
+		if (cache != null)
+			metrics.cacheLookup(digest != null);
+		int index = group.add(file, attrs.fileKey(), cache != null ? attrs : null, digest, isReference(file));
+		if (index < 0) {
+			hardLinks.incrementAndGet();
+			return;
+		}
+		// sampling starts once a group holds two files, one of them not a reference file
+		if (group.isSampled() && index >= 1 && group.getFirstLive() >= 0) {
+			if (index == 1 || group.getFirstLive() == index) {
+				for (int i = 0; i < index; i++)
+					sampleFile(group, i);
+			}
+			sampleFile(group, index);
+		}
+	}
+	
+	/**
+	 * This method receives each file discovered by the walk in chunk
+	 * mode, adds it to the chunk store and queues it to be split into
+	 * chunks. A file with several hard links is only chunked once.
+	 * Called from several walker threads.
+	 * 
+	 * @param file file discovered during the scan
+	 * @param attrs attributes of the file
+	 */
+	private void addChunked(Path file, BasicFileAttributes attrs) {
+		long size = attrs.size();
+		metrics.found(size);
+		// only keys of linked files are kept, so the set stays small
+		if (attrs.fileKey() != null && IO.getLinkCount(file) > 1 && !linkedKeys.add(attrs.fileKey())) {
+			hardLinks.incrementAndGet();
+			return;
+		}
+		int root = 0;
+		while (root < roots.size() - 1 && !file.startsWith(roots.get(root)))
+			root++;
+		try {
+			long key = chunks.addFile(file, size, root);
+			metrics.queued(size);
+			engine.submit(file, size, (hasher, workerSampler) -> hasher.chunk(file, size, 
+					new Chunker(hasher.getDigest(), p.getChunkSize(), 
+							(digest, length) -> chunks.addChunk(key, digest, length))));
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method queues a file to have its samples checked.
+	 * 
+	 * @param group size group the file belongs to
+	 * @param index index of the file within the group
+	 */
+	private void sampleFile(SizeGroup group, int index) {
+		if (group.getDigest(index) != null)
+			return;
+		Path file = group.getFile(index);
+		engine.submit(file, sampler.bytesRead(group.getSize()), (hasher, workerSampler) -> 
+				group.setSample(index, workerSampler.sample(file, group.getSize())));
+	}
+	
+	/**
+	 * This method hashes every file that shares its size with at
+	 * least one other file. A file with a unique size cannot be a
+	 * duplicate, so it is never read. When the sample prefilter is
+	 * on, files of equal size are first split by a checksum of a few
+	 * small samples, and only files whose samples also match are
+	 * hashed in full. Both stages run on the hash engine's workers.
+	 * Files whose digest was found in the hash cache are not read.
+	 * In strict mode, pairs of files are compared byte for byte
+	 * rather than hashed, as that reads each file only once too.
+	 */
+	private void hashCandidates() {
+		engine.await();
+		
+		for (SizeGroup group : sizeMap.values()) {
+			if (group.count() < 2) {
+				sizeSkipped += group.getSize();
+				continue;
+			}
+			if (group.getFirstLive() < 0) {
+				refSkipped += group.getSize() * group.count();
+				continue;
+			}
+			for (int[] alias : group.getAliases())
+				map.addAlias(group.getFileId(alias[0]), alias[1]);
+			for (int i = 0; i < group.count(); i++) {
+				if (group.getDigest(i) != null)
+					map.add(group.getDigest(i), group.getFileId(i), group.getSize());
+			}
+			for (LinkedList<Integer> subGroup : group.groupBySample()) {
+				if (group.hasCached()) {
+					for (int index : subGroup)
+						queueHash(group, index);
+				}
+				else if (!hasLive(group, subGroup)) {
+					long read = group.isSampled() ? sampler.bytesRead(group.getSize()) : 0;
+					refSkipped += (group.getSize() - read) * subGroup.size();
+				}
+				else if (subGroup.size() < 2) {
+					sampleSkipped += group.getSize() - sampler.bytesRead(group.getSize());
+				}
+				else if (subGroup.size() == 2 && p.strictMode()) {
+					engine.submit(group.getFile(subGroup.getFirst()), 2 * group.getSize(), 
+							(hasher, workerSampler) -> compareFiles(group, subGroup));
+				}
+				else {
+					for (int index : subGroup)
+						queueHash(group, index);
+				}
+			}
+		}
+		engine.await();
+		sizeMap.clear();
+	}
+	
+	/**
+	 * This method queues a file of a size group to be hashed.
+	 * 
+	 * @param group size group the file belongs to
+	 * @param index index of the file within the group
+	 */
+	private void queueHash(SizeGroup group, int index) {
+		metrics.queued(group.getSize());
+		engine.submit(group.getFile(index), group.getSize(), 
+				(hasher, workerSampler) -> hashFile(hasher, group, index));
+	}
+	
+	/**
+	 * This method calculates the hash of a given file and adds
+	 * it to the index of files discovered and their hash.
+	 * 
+	 * @param hasher hasher owned by the calling worker
+	 * @param group size group the file belongs to
+	 * @param index index of the file within the group
+	 * @throws IOException if the file cannot be read
+	 */
+	private void hashFile(Hasher hasher, SizeGroup group, int index) throws IOException {
+		Path path = group.getFile(index);
+		byte[] digest = hasher.hash(path, group.getSize());
+		if (cache != null)
+			cache.put(path, group.getAttrs(index), digest);
+		map.add(digest, group.getFileId(index), group.getSize());
+	}
+	
+	/**
+	 * This method compares two files of a size group byte for byte,
+	 * and adds them to the index as a verified group if they match.
+	 * 
+	 * @param group size group the files belong to
+	 * @param pair indices of the two files within the group
+	 */
+	private void compareFiles(SizeGroup group, LinkedList<Integer> pair) {
+		ArrayList<Path> files = new ArrayList<>();
+		for (int index : pair)
+			files.add(group.getFile(index));
+		if (Verifier.split(files).isEmpty())
+			return;
+		
+		String first = files.get(0).toString();
+		String second = files.get(1).toString();
+		verified.add(second.compareTo(first) < 0 ? second : first);
+		map.addPair(group.getFileId(pair.getFirst()), group.getFileId(pair.getLast()), 
+				group.getSize());
+	}
+	
+	/**
+	 * This method determines which files in the map have duplicates 
+	 * and returns all groups of duplicate files. In spill mode, the
+	 * groups are read from the merged digest runs as they are needed,
+	 * and in load mode, from the loaded report.
+	 * 
+	 * @return groups of duplicates
+	 */
+	private Iterator<DupeGroup> getListOfDupes() {
+		if (reader != null)
+			return reader;
+		if (digestRuns == null)
+			return map.getDuplicates().iterator();
+		
+		try {
+			Iterator<ArrayList<long[]>> runGroups = digestRuns.groups(digestWidth - 1);
+			return new Iterator<DupeGroup>() {
+				private DupeGroup pending = advance();
+				
+				public boolean hasNext() {
+					return pending != null;
+				}
+				
+				public DupeGroup next() {
+					DupeGroup group = pending;
+					pending = advance();
+					return group;
+				}
+				
+				private DupeGroup advance() {
+					while (runGroups.hasNext()) {
+						ArrayList<long[]> records = runGroups.next();
+						if (records.size() < 2)
+							continue;
+						ArrayList<String> group = new ArrayList<>();
+						HashMap<String, List<String>> groupAliases = new HashMap<>();
+						for (long[] record : records) {
+							try {
+								group.add(getSpilledWithAliases(record[digestWidth - 1], groupAliases));
+							} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+						}
+						Collections.sort(group);
+						if (group.size() < 2)
+							continue;
+						
+						long[] record = records.get(0);
+						ByteBuffer packed = ByteBuffer.allocate(8 * (digestWidth - 2));
+						for (int i = 1; i < digestWidth - 1; i++)
+							packed.putLong(record[i]);
+						byte[] digest = Arrays.copyOf(packed.array(), digestLength);
+						return new DupeGroup(digest, record[0], new LinkedList<>(group), groupAliases);
+					}
+					return null;
+				}
+			};
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			return Collections.emptyIterator();
+		}
+	}
+	
+	/**
+	 * This method confirms or verifies a batch of groups of duplicates,
+	 * as the user-entered arguments require, and orders the files of
+	 * each group so that those to keep come last. Groups of a loaded 
+	 * report are always confirmed before they are acted on, whatever
+	 * the algorithm of the report.
+	 * 
+	 * @param list groups of duplicates
+	 * @return groups of duplicates ready to be reported or acted on
+	 */
+	private ArrayList<DupeGroup> checkDupes(ArrayList<DupeGroup> list) {
+		// splitting a group may leave only reference files in part of it
+		list = markReferences(list);
+		if (p.strictMode())
+			list = markReferences(verifyDupes(list));
+		// a loaded report is a snapshot, so its files may have changed since it was written
+		else if ((p.moveMode() || p.deleteMode() || p.linkMode()) && (!cryptographic || reader != null))
+			list = markReferences(confirmDupes(list));
+		return list;
+	}
+	
+	/**
+	 * This method returns the groups of identical directories, then 
+	 * what is left of the groups of duplicate files. Every group of 
+	 * files is checked first, since directories are told apart by the 
+	 * groups their files belong to. Files in directories acted on as a 
+	 * whole are dropped from their groups, and files in directories
+	 * kept whole are kept, like reference files.
+	 * 
+	 * @param groups groups of duplicate files
+	 * @return groups of directories, then groups of files
+	 */
+	private ArrayList<DupeGroup> getListOfDirs(Iterator<DupeGroup> groups) {
+		ArrayList<DupeGroup> files = new ArrayList<>();
+		while (groups.hasNext()) {
+			ArrayList<DupeGroup> list = new ArrayList<>();
+			while (groups.hasNext() && list.size() < BATCH_SIZE)
+				list.add(groups.next());
+			files.addAll(checkDupes(list));
+		}
+		for (Path ref : refRoots)
+			tree.protect(ref);
+		ArrayList<DupeGroup> dirs;
+		try {
+			dirs = markReferences(tree.getDuplicates(files));
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("Error: " + e.getMessage());
+			return files;
+		}
+		
+		HashSet<Path> removed = new HashSet<>();
+		for (DupeGroup group : dirs) {
+			LinkedList<String> subList = group.getFiles();
+			int acted = subList.size() - (p.moveMode() ? group.getReferences() : group.getKept());
+			for (int i = 0; i < subList.size(); i++) {
+				Path dir = IO.getFile(subList.get(i)).toAbsolutePath().normalize();
+				(i < acted ? removed : keptDirs).add(dir);
+			}
+		}
+		ArrayList<DupeGroup> left = new ArrayList<>();
+		for (DupeGroup group : files) {
+			LinkedList<String> subList = new LinkedList<>();
+			for (String file : group.getFiles()) {
+				if (!isUnder(IO.getFile(file), removed))
+					subList.add(file);
+			}
+			if (subList.size() > 1)
+				left.add(group.withFiles(subList));
+		}
+		left = markReferences(left);
+		dirGroups = dirs.size();
+		foldedGroups = files.size() - left.size();
+		dirs.addAll(left);
+		return dirs;
+	}
+	
+	/**
+	 * This method hashes candidates in spill mode. The (size, key hash,
+	 * path id) records written during the walk are merged in size order,
+	 * hard links are dropped by withoutLinks, and each size group of two
+	 * or more files is sampled and hashed like in memory, a batch of 
+	 * groups at a time. A group too large for a
+	 * batch is never held in memory, but streamed to hashSpilledGroup.
+	 * The resulting (size, digest, path id) records are spilled again
+	 * for getListOfDupes.
+	 */
+	private void hashSpilled() {
+		try {
+			Iterator<long[]> sizes = withoutLinks(sizeRuns.sorted());
+			long[] record = sizes.hasNext() ? sizes.next() : null;
+			ArrayList<ArrayList<long[]>> batch = new ArrayList<>();
+			int batchFiles = 0;
+			while (record != null) {
+				long size = record[0];
+				ArrayList<long[]> group = new ArrayList<>();
+				while (record != null && record[0] == size && group.size() < SPILL_BATCH_FILES) {
+					group.add(record);
+					record = sizes.hasNext() ? sizes.next() : null;
+				}
+				if (record != null && record[0] == size) {
+					record = hashSpilledGroup(group, sizes, record);
+					continue;
+				}
+				if (group.size() < 2) {
+					sizeSkipped += size;
+					continue;
+				}
+				batch.add(group);
+				batchFiles += group.size();
+				if (batchFiles >= SPILL_BATCH_FILES) {
+					hashSpilledBatch(batch);
+					batch = new ArrayList<>();
+					batchFiles = 0;
+				}
+			}
+			hashSpilledBatch(batch);
+		} catch (IOException | UncheckedIOException e) { System.err.println("Error: " + e.getMessage()); }
+		sizeRuns.close();
+	}
+	
+	/**
+	 * This method drops hard links from the merged size runs. Records
+	 * are sorted by size, then by the hash of their file key, so links
+	 * to one file are next to each other; the keys of records sharing
+	 * both are read again to tell links from hash collisions. Every
+	 * link but the first is kept as an alias of it, in a map that only
+	 * grows with the number of hard links.
+	 * 
+	 * @param records merged size runs
+	 * @return size runs holding one record per physical file
+	 */
+	private Iterator<long[]> withoutLinks(Iterator<long[]> records) {
+		return new Iterator<long[]>() {
+			private ArrayDeque<long[]> pending = new ArrayDeque<>();
+			private long[] next = records.hasNext() ? records.next() : null;
+			
+			public boolean hasNext() {
+				fill();
+				return !pending.isEmpty();
+			}
+			
+			public long[] next() {
+				fill();
+				if (pending.isEmpty())
+					throw new NoSuchElementException();
+				return pending.poll();
+			}
+			
+			private void fill() {
+				if (!pending.isEmpty() || next == null)
+					return;
+				ArrayList<long[]> run = new ArrayList<>();
+				long[] head = next;
+				do {
+					run.add(next);
+					next = records.hasNext() ? records.next() : null;
+				} while (head[1] >= 0 && next != null && next[0] == head[0] && next[1] == head[1]);
+				if (run.size() == 1) {
+					pending.add(head);
+					return;
+				}
+				
+				HashMap<Object, long[]> byKey = new HashMap<>();
+				for (long[] record : run) {
+					Object key = null;
+					try {
+						key = Files.readAttributes(IO.getFile(pathSpill.get(record[2])), BasicFileAttributes.class, 
+								LinkOption.NOFOLLOW_LINKS).fileKey();
+					} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+					long[] primary = key != null ? byKey.putIfAbsent(key, record) : null;
+					if (primary == null) {
+						pending.add(record);
+						continue;
+					}
+					spillAliases.computeIfAbsent(primary[2], k -> new ArrayList<>()).add(record[2]);
+					hardLinks.incrementAndGet();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * This method returns the path of a spilled file, and adds the paths
+	 * of its aliases, if it has any, to a given map. The first link in 
+	 * path order stands for the file, as in memory.
+	 * 
+	 * @param pathId id of the file path in the path spill
+	 * @param groupAliases map of the aliases of a group, by file
+	 * @return path of the file
+	 * @throws IOException if a path cannot be read back from the spill
+	 */
+	private String getSpilledWithAliases(long pathId, HashMap<String, List<String>> groupAliases) 
+			throws IOException {
+		ArrayList<Long> ids = spillAliases.get(pathId);
+		if (ids == null)
+			return pathSpill.get(pathId);
+		ArrayList<String> links = new ArrayList<>();
+		links.add(pathSpill.get(pathId));
+		for (long id : ids)
+			links.add(pathSpill.get(id));
+		Collections.sort(links);
+		String path = links.remove(0);
+		groupAliases.put(path, links);
+		return path;
+	}
+	
+	/**
+	 * This method samples, then hashes, a batch of spilled size groups
+	 * on the hash engine's workers.
+	 * 
+	 * @param batch size groups of (size, key hash, path id) records
+	 * @throws IOException if a path cannot be read back from the spill
+	 */
+	private void hashSpilledBatch(ArrayList<ArrayList<long[]>> batch) throws IOException {
+		long[][] samples = new long[batch.size()][];
+		boolean[][] sampled = new boolean[batch.size()][];
+		Path[][] files = new Path[batch.size()][];
+		boolean[][] refs = new boolean[batch.size()][];
+		for (int g = 0; g < batch.size(); g++) {
+			ArrayList<long[]> group = batch.get(g);
+			long size = group.get(0)[0];
+			boolean live = false;
+			files[g] = new Path[group.size()];
+			refs[g] = new boolean[group.size()];
+			for (int i = 0; i < group.size(); i++) {
+				files[g][i] = IO.getFile(pathSpill.get(group.get(i)[2]));
+				refs[g][i] = isReference(files[g][i]);
+				live |= !refs[g][i];
+			}
+			if (!live) {
+				refSkipped += size * group.size();
+				files[g] = null;
+				continue;
+			}
+			if (sampler == null || !sampler.worthSampling(size))
+				continue;
+			samples[g] = new long[group.size()];
+			sampled[g] = new boolean[group.size()];
+			for (int i = 0; i < group.size(); i++) {
+				long[] groupSamples = samples[g];
+				boolean[] groupSampled = sampled[g];
+				int index = i;
+				Path file = files[g][i];
+				engine.submit(file, sampler.bytesRead(size), (hasher, workerSampler) -> {
+					long sample = workerSampler.sample(file, size);
+					synchronized (groupSamples) {
+						groupSamples[index] = sample;
+						groupSampled[index] = true;
+					}
+				});
+			}
+		}
+		engine.await();
+		
+		for (int g = 0; g < batch.size(); g++) {
+			ArrayList<long[]> group = batch.get(g);
+			long size = group.get(0)[0];
+			if (files[g] == null)
+				continue;
+			TreeMap<Long, LinkedList<Integer>> subGroups = new TreeMap<>();
+			for (int i = 0; i < group.size(); i++) {
+				if (samples[g] == null)
+					subGroups.computeIfAbsent(0L, k -> new LinkedList<>()).add(i);
+				else if (sampled[g][i])
+					subGroups.computeIfAbsent(samples[g][i], k -> new LinkedList<>()).add(i);
+			}
+			for (LinkedList<Integer> subGroup : subGroups.values()) {
+				long read = samples[g] != null ? sampler.bytesRead(size) : 0;
+				if (subGroup.size() < 2) {
+					sampleSkipped += size - read;
+					continue;
+				}
+				boolean live = false;
+				for (int i : subGroup)
+					live |= !refs[g][i];
+				if (!live) {
+					refSkipped += (size - read) * subGroup.size();
+					continue;
+				}
+				for (int i : subGroup) {
+					metrics.queued(size);
+					long pathId = group.get(i)[2];
+					Path file = files[g][i];
+					engine.submit(file, size, (hasher, workerSampler) -> hashSpilledFile(hasher, size, pathId, file));
+				}
+			}
+		}
+		engine.await();
+	}
+	
+	/**
+	 * This method samples, then hashes, a spilled size group too large
+	 * to hold in memory. The files of the group are sampled as they are
+	 * read from the merged size runs, and their (sample, reference, 
+	 * path id) records are spilled to a sorter of their own. Read back
+	 * in sample order, every file sharing its sample with another is
+	 * hashed, unless only reference files share it: those sort last, 
+	 * so such a sample starts with a reference file.
+	 * 
+	 * @param first records of the group read so far
+	 * @param sizes merged size runs, positioned after those records
+	 * @param next next record of the size runs
+	 * @return first record of the next size group, or null
+	 * @throws IOException if a path or sample cannot be spilled
+	 */
+	private long[] hashSpilledGroup(ArrayList<long[]> first, Iterator<long[]> sizes, long[] next) 
+			throws IOException {
+		long size = next[0];
+		boolean sampling = sampler != null && sampler.worthSampling(size);
+		long read = sampling ? sampler.bytesRead(size) : 0;
+		SpillSorter samples = new SpillSorter(spillDir, "samples", 3, p.getMemoryBudget() / 4);
+		try {
+			for (long[] record : first)
+				sampleSpilledFile(size, record[2], sampling, samples);
+			first.clear();
+			while (next != null && next[0] == size) {
+				sampleSpilledFile(size, next[2], sampling, samples);
+				next = sizes.hasNext() ? sizes.next() : null;
+			}
+			engine.await();
+			
+			Iterator<long[]> bySample = samples.sorted();
+			long[] record = bySample.hasNext() ? bySample.next() : null;
+			while (record != null) {
+				long[] head = record;
+				record = bySample.hasNext() ? bySample.next() : null;
+				if (record == null || record[0] != head[0]) {
+					sampleSkipped += size - read;
+					continue;
+				}
+				boolean live = head[1] == 0;
+				long[] member = head;
+				while (true) {
+					if (live)
+						queueSpilledFile(size, member[2]);
+					else
+						refSkipped += size - read;
+					if (record == null || record[0] != head[0])
+						break;
+					member = record;
+					record = bySample.hasNext() ? bySample.next() : null;
+				}
+			}
+			engine.await();
+		} finally {
+			samples.close();
+		}
+		return next;
+	}
+	
+	/**
+	 * This method queues a file of a large spilled size group to have
+	 * its sample spilled. Without sampling, a sample of 0 is spilled
+	 * straight away.
+	 * 
+	 * @param size size of the file in bytes
+	 * @param pathId id of the file path in the path spill
+	 * @param sampling whether the file is worth sampling
+	 * @param samples sorter the (sample, reference, path id) record 
+	 * is added to
+	 * @throws IOException if the path or record cannot be spilled
+	 */
+	private void sampleSpilledFile(long size, long pathId, boolean sampling, SpillSorter samples) 
+			throws IOException {
+		Path file = IO.getFile(pathSpill.get(pathId));
+		long ref = isReference(file) ? 1 : 0;
+		if (!sampling) {
+			samples.add(new long[] { 0, ref, pathId });
+			return;
+		}
+		engine.submit(file, sampler.bytesRead(size), (hasher, workerSampler) -> 
+				samples.add(new long[] { workerSampler.sample(file, size), ref, pathId }));
+	}
+	
+	/**
+	 * This method queues a spilled file to be hashed.
+	 * 
+	 * @param size size of the file in bytes
+	 * @param pathId id of the file path in the path spill
+	 * @throws IOException if the path cannot be read back from the spill
+	 */
+	private void queueSpilledFile(long size, long pathId) throws IOException {
+		metrics.queued(size);
+		Path file = IO.getFile(pathSpill.get(pathId));
+		engine.submit(file, size, (hasher, workerSampler) -> hashSpilledFile(hasher, size, pathId, file));
+	}
+	
+	/**
+	 * This method calculates the hash of a spilled file, or looks it
+	 * up in the hash cache, and spills a (size, digest, path id) record.
+	 * 
+	 * @param hasher hasher owned by the calling worker
+	 * @param size size of the file in bytes
+	 * @param pathId id of the file path in the path spill
+	 * @param path path of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private void hashSpilledFile(Hasher hasher, long size, long pathId, Path path) throws IOException {
+		byte[] digest = null;
+		BasicFileAttributes attrs = null;
+		if (cache != null) {
+			attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			digest = cache.lookup(path, attrs);
+			metrics.cacheLookup(digest != null);
+		}
+		if (digest == null) {
+			digest = hasher.hash(path, size);
+			if (cache != null)
+				cache.put(path, attrs, digest);
+		}
+		
+		long[] record = new long[digestWidth];
+		record[0] = size;
+		ByteBuffer packed = ByteBuffer.allocate(8 * (digestWidth - 2)).put(digest);
+		for (int i = 1; i < digestWidth - 1; i++)
+			record[i] = packed.getLong(8 * (i - 1));
+		record[digestWidth - 1] = pathId;
+		digestRuns.add(record);
+	}
+	
+	/**
+	 * This method deletes every file spill mode left on disk.
+	 */
+	private void closeSpill() {
+		if (sizeRuns == null)
+			return;
+		digestRuns.close();
+		pathSpill.close();
+		try {
+			Files.deleteIfExists(spillDir);
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method verifies each group of duplicates byte for byte,
+	 * on the hash engine's workers, one group per job. Files that do
+	 * not match the rest of their group are split off, and groups left
+	 * with a single file are dropped. Pairs already compared while
+	 * scanning are not read again.
+	 * 
+	 * @param list groups of duplicates
+	 * @return groups of verified duplicates
+	 */
+	private ArrayList<DupeGroup> verifyDupes(ArrayList<DupeGroup> list) {
+		ArrayList<List<LinkedList<Path>>> results = new ArrayList<>();
+		int before = unreadable;
+		for (DupeGroup group : list) {
+			LinkedList<String> subList = group.getFiles();
+			if (verified.contains(subList.getFirst())) {
+				results.add(null);
+				continue;
+			}
+			ArrayList<Path> files = new ArrayList<>();
+			for (String item : subList)
+				files.add(IO.getFile(item));
+			int slot = results.size();
+			results.add(null);
+			engine.submit(files.get(0), group.getSize() * files.size(), (hasher, workerSampler) -> {
+				ArrayList<Path> failed = new ArrayList<>();
+				List<LinkedList<Path>> split = Verifier.split(files, failed);
+				synchronized (results) {
+					results.set(slot, split);
+					unreadable += failed.size();
+				}
+			});
+		}
+		engine.await();
+		
+		ArrayList<DupeGroup> confirmed = new ArrayList<>();
+		for (int i = 0; i < list.size(); i++) {
+			List<LinkedList<Path>> split;
+			synchronized (results) {
+				split = results.get(i);
+			}
+			if (split == null) {
+				confirmed.add(list.get(i));
+				continue;
+			}
+			int kept = 0;
+			for (LinkedList<Path> same : split) {
+				LinkedList<String> confirmedList = new LinkedList<>();
+				for (Path file : same)
+					confirmedList.add(file.toString());
+				confirmed.add(list.get(i).withFiles(confirmedList));
+				kept += same.size();
+			}
+			unconfirmed += list.get(i).getFiles().size() - kept;
+		}
+		// files that could not be read were counted as unconfirmed as well
+		unconfirmed -= unreadable - before;
+		return confirmed;
+	}
+	
+	/**
+	 * This method confirms each group of duplicates found with a
+	 * non-cryptographic digest by hashing its files again with a 
+	 * cryptographic one. Files that do not match the rest of their
+	 * group are split off, and groups left with a single file are
+	 * dropped, so no file is moved or deleted on the strength of a
+	 * hash collision.
+	 * 
+	 * @param list groups of duplicates
+	 * @return groups of confirmed duplicates
+	 */
+	private ArrayList<DupeGroup> confirmDupes(ArrayList<DupeGroup> list) {
+		ConcurrentHashMap<String, ByteBuffer> digests = new ConcurrentHashMap<>();
+		try {
+			if (confirmEngine == null)
+				confirmEngine = new HashEngine(p.getThreads(), Digest.CONFIRM, p.getSampleSize(), metrics);
+			for (DupeGroup group : list) {
+				for (String item : group.getFiles()) {
+					metrics.queued(group.getSize());
+					Path file = IO.getFile(item);
+					confirmEngine.submit(file, group.getSize(), (hasher, workerSampler) -> {
+						byte[] digest = hasher.hash(file, Files.size(file));
+						digests.put(item, ByteBuffer.wrap(digest));
+					});
+				}
+			}
+			confirmEngine.await();
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println(e.getMessage());
+			System.exit(0);
+		}
+		
+		ArrayList<DupeGroup> confirmed = new ArrayList<>();
+		for (DupeGroup group : list) {
+			TreeMap<ByteBuffer, LinkedList<String>> split = new TreeMap<>();
+			for (String item : group.getFiles()) {
+				if (digests.containsKey(item))
+					split.computeIfAbsent(digests.get(item), k -> new LinkedList<>()).add(item);
+				else
+					unreadable++;
+			}
+			for (LinkedList<String> confirmedList : split.values()) {
+				if (confirmedList.size() > 1)
+					confirmed.add(group.withFiles(confirmedList));
+				else
+					unconfirmed++;
+			}
+		}
+		return confirmed;
+	}
+	
+	/**
+	 * This method returns the roots to walk: the source directories,
+	 * then the reference directories. A root equal to or nested in 
+	 * another is dropped, so no file is walked twice.
+	 * 
+	 * @return roots to walk
+	 */
+	private ArrayList<Path> getRoots() {
+		ArrayList<String> dirs = new ArrayList<>(p.getSrcDirs());
+		dirs.addAll(p.getRefDirs());
+		return IO.getRoots(dirs);
+	}
+	
+	/**
+	 * This method checks whether a file lies in a reference root, or
+	 * in a directory kept whole in directory mode.
+	 * 
+	 * @param file file to check
+	 * @return true if the file lies in a reference root
+	 */
+	private boolean isReference(Path file) {
+		if (refRoots.isEmpty() && keptDirs.isEmpty())
+			return false;
+		return isUnder(file, refRoots) || isUnder(file, keptDirs);
+	}
+	
+	/**
+	 * This method checks whether a file lies in any of the given
+	 * directories.
+	 * 
+	 * @param file file to check
+	 * @param dirs absolute, normalized paths of the directories
+	 * @return true if the file lies in one of them
+	 */
+	private static boolean isUnder(Path file, Collection<Path> dirs) {
+		if (dirs.isEmpty())
+			return false;
+		for (Path dir = file.toAbsolutePath().normalize(); dir != null; dir = dir.getParent()) {
+			if (dirs.contains(dir))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * This method checks whether a file lies in a reference root.
+	 * 
+	 * @param file path of the file to check
+	 * @return true if the file lies in a reference root
+	 */
+	private boolean isReference(String file) {
+		return isReference(IO.getFile(file));
+	}
+	
+	/**
+	 * This method checks whether a sub group of a size group holds
+	 * a file outside of the reference roots.
+	 * 
+	 * @param group size group
+	 * @param subGroup indices of files in the size group
+	 * @return true if a file is not a reference file
+	 */
+	private boolean hasLive(SizeGroup group, LinkedList<Integer> subGroup) {
+		for (int index : subGroup) {
+			if (!group.isReference(index))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * This method orders each group of duplicates so that files in
+	 * reference roots come last, where they are kept. Groups made up 
+	 * only of reference files are dropped.
+	 * 
+	 * @param list groups of duplicates
+	 * @return groups of duplicates holding at least one other file
+	 */
+	private ArrayList<DupeGroup> markReferences(ArrayList<DupeGroup> list) {
+		if (refRoots.isEmpty() && keptDirs.isEmpty())
+			return list;
+		ArrayList<DupeGroup> result = new ArrayList<>();
+		for (DupeGroup group : list) {
+			LinkedList<String> live = new LinkedList<>();
+			LinkedList<String> refs = new LinkedList<>();
+			for (String file : group.getFiles())
+				(isReference(file) ? refs : live).add(file);
+			if (live.isEmpty())
+				continue;
+			live.addAll(refs);
+			result.add(group.withReferences(live, refs.size()));
+		}
+		return result;
+	}
+	
+	/**
+	 * This method returns the name of the digest algorithm of the
+	 * groups being reported.
+	 * 
+	 * @return name of the algorithm
+	 */
+	private String getAlgorithm() {
+		return reader != null ? reader.getAlgorithm() : p.getAlgorithm();
+	}
+	
+	/**
+	 * This method returns the number of bytes each scan stage
+	 * avoided reading.
+	 * 
+	 * @return String representation of per-stage statistics
+	 */
+	private String stageStats() {
+		StringBuilder stats = new StringBuilder();
+		if (walker.getErrorCount() > 0)
+			stats.append(walker.getErrorCount() + " paths could not be read." + 
+					System.lineSeparator());
+		if (walker.getPrunedCount() > 0 || walker.getSkippedCount() > 0)
+			stats.append("Filters pruned " + walker.getPrunedCount() + " directories and skipped " + 
+					walker.getSkippedCount() + " files (" + walker.getSkippedBytes() + " bytes)." + 
+					System.lineSeparator());
+		if (hardLinks.get() > 0)
+			stats.append(hardLinks + " hard links were read once, as aliases of the file " + 
+					"they link to." + System.lineSeparator());
+		if (cache != null)
+			stats.append(cache.getHits() + " files found in the hash cache." + 
+					System.lineSeparator());
+		if (unconfirmed > 0)
+			stats.append(unconfirmed + " files failed " + 
+					(p.strictMode() ? "byte-for-byte" : Digest.CONFIRM) + 
+					" confirmation and were left alone." + System.lineSeparator());
+		if (unreadable > 0)
+			stats.append(unreadable + " files could not be read for confirmation and were left alone." + 
+					System.lineSeparator());
+		if (digestRuns != null)
+			stats.append("Spilled " + sizeRuns.getRunCount() + " size runs and " + 
+					digestRuns.getRunCount() + " digest runs to disk." + System.lineSeparator());
+		if (chunks != null && chunks.getRunCount() > 0)
+			stats.append("Spilled " + chunks.getRunCount() + " chunk runs to disk." + System.lineSeparator());
+		if (reader != null || chunks != null)
+			return stats.toString();
+		stats.append("Size filter skipped reading " + sizeSkipped +
+				" bytes." + System.lineSeparator());
+		if (sampler != null)
+			stats.append("Sample filter skipped reading " + sampleSkipped +
+					" bytes." + System.lineSeparator());
+		if (tree != null)
+			stats.append(dirGroups + " groups of identical directories took the place of " + 
+					foldedGroups + " groups of files." + System.lineSeparator());
+		if (!refRoots.isEmpty())
+			stats.append("Reference filter skipped reading " + refSkipped + " bytes." + 
+					System.lineSeparator() + refKept + " files in reference roots were kept." + 
+					System.lineSeparator());
+		return stats.toString();
+	}
+	
+	/**
+	 * This method ranks the pairs of files sharing chunks and writes
+	 * them to the report, followed by the dedup ratio of the scan and,
+	 * with several roots, of each root. The chunk store is deleted
+	 * once it has been read.
+	 */
+	private void outputChunks() {
+		try {
+			chunks.analyze();
+			Iterator<long[]> pairs = chunks.pairs();
+			while (pairs.hasNext()) {
+				long[] pair = pairs.next();
+				if (report == null)
+					report = new ReportWriter(expFile, p.getFormat(), getAlgorithm());
+				report.writePair(chunks.getPath(pair[0]), chunks.getSize(pair[0]), 
+						chunks.getPath(pair[1]), chunks.getSize(pair[1]), pair[2]);
+			}
+		} catch (IOException | UncheckedIOException e) { System.err.println("Error: " + e.getMessage()); }
+		
+		StringBuilder stats = new StringBuilder();
+		if (chunks.getPairCount() == 0 && chunks.getCrowdedChunks() == 0)
+			stats.append("No files sharing chunks found!" + System.lineSeparator());
+		else
+			stats.append("Final stats: " + chunks.getPairCount() + 
+					" pairs of files sharing chunks found." + System.lineSeparator());
+		stats.append(chunks.getFileCount() + " files split into " + chunks.getChunkCount() + 
+				" chunks, " + chunks.getUniqueChunks() + " of them unique." + System.lineSeparator());
+		stats.append("Dedup ratio " + ratio(chunks.getTotalBytes(), chunks.getUniqueBytes()) + 
+				" (" + chunks.getTotalBytes() + " bytes, " + chunks.getUniqueBytes() + 
+				" of them unique)." + System.lineSeparator());
+		for (int i = 0; roots.size() > 1 && i < roots.size(); i++)
+			stats.append("Dedup ratio " + ratio(chunks.getRootBytes(i), chunks.getRootUniqueBytes(i)) + 
+					" within " + roots.get(i) + " (" + chunks.getRootBytes(i) + " bytes, " + 
+					chunks.getRootUniqueBytes(i) + " of them unique)." + System.lineSeparator());
+		if (chunks.getCrowdedChunks() > 0)
+			stats.append(chunks.getCrowdedChunks() + " chunks found in more than " + 
+					ChunkStore.MAX_SHARERS + " files were left out of the pairs." + System.lineSeparator());
+		stats.append(stageStats());
+		if (report != null && report.isText())
+			report.write(stats.toString());
+		else
+			console.print(stats.toString());
+		chunks.close();
+	}
+	
+	/**
+	 * This method returns the ratio of the bytes scanned to the bytes
+	 * left once every chunk is stored only once.
+	 * 
+	 * @param total bytes scanned
+	 * @param unique unique bytes
+	 * @return String representation of the ratio
+	 */
+	private static String ratio(long total, long unique) {
+		return String.format("%.2f:1", unique == 0 ? 1.0 : (double) total / unique);
+	}
+	
+	/**
+	 * This method writes a given list of duplicate files found to
+	 * the report, opening the report on first use.
+	 * 
+	 * @param list groups of duplicate files
+	 */
+	private void outputDupes(ArrayList<DupeGroup> list) {
+		if (report == null && !list.isEmpty())
+			report = new ReportWriter(expFile, p.getFormat(), getAlgorithm());
+		for (DupeGroup group : list)
+			report.writeGroup(group, false);
+	}
+	
+	/**
+	 * This method writes a given list of duplicate files found to
+	 * the report. Additionally, as part of the formatting process,
+	 * deleted files are marked with an asterisk.
+	 * 
+	 * @param list groups of duplicate files
+	 */
+	private void outputDupesMarked(ArrayList<DupeGroup> list) {
+		if (report == null && !list.isEmpty())
+			report = new ReportWriter(expFile, p.getFormat(), getAlgorithm());
+		for (DupeGroup group : list)
+			report.writeGroup(group, true);
+	}
+}
@@ -0,0 +1,363 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class indexes the chunks of every file scanned in chunk mode, 
+ * on disk, so the heap used stays flat however large the tree. Each
+ * chunk is kept as a fixed-width record of its digest (up to its 
+ * first 128 bits), length and file, and the records are sorted by
+ * digest in bounded memory with a SpillSorter. Paths and sizes of 
+ * the files are written to disk as well, and only read back for the 
+ * file pairs that are reported.
+ * <p>
+ * Once every file is chunked, the sorted records are read once to
+ * total the bytes and the unique bytes of the whole scan and of each
+ * root, and to list every pair of files sharing a chunk. The pairs 
+ * are sorted in turn, to sum the bytes each pair shares, and sorted
+ * once more to rank the pairs by those bytes. A chunk found in more
+ * than MAX_SHARERS files counts towards the totals, but is left out
+ * of the pairs, since the number of pairs grows with the square of
+ * the number of files.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ChunkStore {
+	public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+	public static final int MAX_SHARERS = 32;
+	private static final int FILE_RECORD = 16;
+	
+	private Path dir;
+	private PathSpill paths;
+	private Path tableFile;
+	private DataOutputStream table;
+	private RandomAccessFile tableIn;
+	private int fileCount;
+	private SpillSorter chunks;
+	private SpillSorter shared;
+	private SpillSorter ranked;
+	private long chunkCount;
+	private long uniqueChunks;
+	private long totalBytes;
+	private long uniqueBytes;
+	private long[] rootBytes;
+	private long[] rootUniqueBytes;
+	private long pairCount;
+	private long crowdedChunks;
+	
+	/**
+	 * Default and sole constructor creates the store in a new
+	 * temporary directory.
+	 * 
+	 * @param roots number of roots scanned
+	 * @param memoryBudget bytes of heap records may use before spilling
+	 * @throws IOException if the store cannot be created
+	 */
+	public ChunkStore(int roots, long memoryBudget) throws IOException {
+		dir = Files.createTempDirectory("duplix-chunks");
+		paths = new PathSpill(dir);
+		tableFile = Files.createTempFile(dir, "files", ".bin");
+		table = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tableFile)));
+		fileCount = 0;
+		chunks = new SpillSorter(dir, "chunks", 4, memoryBudget / 2);
+		shared = new SpillSorter(dir, "shared", 3, memoryBudget / 4);
+		ranked = new SpillSorter(dir, "ranked", 3, memoryBudget / 4);
+		rootBytes = new long[roots];
+		rootUniqueBytes = new long[roots];
+	}
+	
+	/**
+	 * This method adds a file to the store.
+	 * 
+	 * @param file file about to be chunked
+	 * @param size size of the file in bytes
+	 * @param root index of the root the file was found under
+	 * @return key of the file, which its chunks are added with
+	 * @throws IOException if the file cannot be stored
+	 */
+	public synchronized long addFile(Path file, long size, int root) throws IOException {
+		table.writeLong(paths.add(file));
+		table.writeLong(size);
+		return (long) root << 32 | fileCount++;
+	}
+	
+	/**
+	 * This method adds a chunk of a file to the store. Called from
+	 * several worker threads.
+	 * 
+	 * @param file key of the file, as returned by addFile
+	 * @param digest digest of the chunk
+	 * @param length length of the chunk in bytes
+	 * @throws IOException if the chunk cannot be stored
+	 */
+	public void addChunk(long file, byte[] digest, int length) throws IOException {
+		// shorter digests are padded with zeros
+		ByteBuffer bytes = ByteBuffer.allocate(16).put(digest, 0, Math.min(16, digest.length));
+		chunks.add(new long[] { bytes.getLong(0), bytes.getLong(8), length, file });
+	}
+	
+	/**
+	 * This method reads every chunk back, in digest order, to total
+	 * the bytes of the scan and to rank the file pairs that share
+	 * chunks. No chunks may be added once this method has been called.
+	 * 
+	 * @throws IOException if the store cannot be read
+	 */
+	public void analyze() throws IOException {
+		int[] sharers = new int[MAX_SHARERS + 1];
+		Iterator<long[]> sorted = chunks.sorted();
+		long[] record = sorted.hasNext() ? sorted.next() : null;
+		while (record != null) {
+			long[] first = record;
+			long length = first[2];
+			int count = 0;
+			int lastRoot = -1;
+			long lastFile = -1;
+			uniqueChunks++;
+			uniqueBytes += length;
+			// records of a chunk follow each other, by root and then by file
+			while (record != null && record[0] == first[0] && record[1] == first[1] && record[2] == first[2]) {
+				int root = (int) (record[3] >>> 32);
+				chunkCount++;
+				totalBytes += length;
+				rootBytes[root] += length;
+				if (root != lastRoot)
+					rootUniqueBytes[root] += length;
+				if (record[3] != lastFile && count <= MAX_SHARERS)
+					sharers[count++] = (int) record[3];
+				lastRoot = root;
+				lastFile = record[3];
+				record = sorted.hasNext() ? sorted.next() : null;
+			}
+			if (count > MAX_SHARERS)
+				crowdedChunks++;
+			else {
+				for (int i = 0; i < count; i++) {
+					for (int j = i + 1; j < count; j++)
+						shared.add(new long[] { Math.min(sharers[i], sharers[j]), 
+								Math.max(sharers[i], sharers[j]), length });
+				}
+			}
+		}
+		chunks.close();
+		
+		Iterator<long[]> pairs = shared.sorted();
+		record = pairs.hasNext() ? pairs.next() : null;
+		while (record != null) {
+			long[] first = record;
+			long bytes = 0;
+			while (record != null && record[0] == first[0] && record[1] == first[1]) {
+				bytes += record[2];
+				record = pairs.hasNext() ? pairs.next() : null;
+			}
+			// the complement of the count sorts the pairs sharing most first
+			ranked.add(new long[] { ~bytes, first[0], first[1] });
+			pairCount++;
+		}
+		shared.close();
+	}
+	
+	/**
+	 * This method returns every pair of files sharing at least one
+	 * chunk, as (file, file, shared bytes) records, the pairs sharing
+	 * the most bytes first. Only valid once analyze has been called.
+	 * 
+	 * @return iterator over the pairs of files
+	 * @throws IOException if the store cannot be read
+	 */
+	public Iterator<long[]> pairs() throws IOException {
+		Iterator<long[]> sorted = ranked.sorted();
+		return new Iterator<long[]>() {
+			public boolean hasNext() {
+				return sorted.hasNext();
+			}
+			
+			public long[] next() {
+				if (!sorted.hasNext())
+					throw new NoSuchElementException();
+				long[] record = sorted.next();
+				return new long[] { record[1], record[2], ~record[0] };
+			}
+		};
+	}
+	
+	/**
+	 * This method returns the String representation of the path of
+	 * a file.
+	 * 
+	 * @param file number of the file, as found in a pair
+	 * @return String representation of the file path
+	 * @throws IOException if the path cannot be read
+	 */
+	public synchronized String getPath(long file) throws IOException {
+		return paths.get(readTable(file, 0));
+	}
+	
+	/**
+	 * This method returns the size of a file.
+	 * 
+	 * @param file number of the file, as found in a pair
+	 * @return size of the file in bytes
+	 * @throws IOException if the size cannot be read
+	 */
+	public synchronized long getSize(long file) throws IOException {
+		return readTable(file, 8);
+	}
+	
+	/**
+	 * This method returns the number of files chunked.
+	 * 
+	 * @return number of files
+	 */
+	public synchronized int getFileCount() {
+		return fileCount;
+	}
+	
+	/**
+	 * This method returns the number of chunks found, counting
+	 * every copy.
+	 * 
+	 * @return number of chunks
+	 */
+	public long getChunkCount() {
+		return chunkCount;
+	}
+	
+	/**
+	 * This method returns the number of distinct chunks found.
+	 * 
+	 * @return number of unique chunks
+	 */
+	public long getUniqueChunks() {
+		return uniqueChunks;
+	}
+	
+	/**
+	 * This method returns the bytes of every file chunked.
+	 * 
+	 * @return total bytes
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+	
+	/**
+	 * This method returns the bytes left if every chunk were 
+	 * stored only once.
+	 * 
+	 * @return unique bytes
+	 */
+	public long getUniqueBytes() {
+		return uniqueBytes;
+	}
+	
+	/**
+	 * This method returns the bytes of every file chunked under
+	 * a root.
+	 * 
+	 * @param root index of the root
+	 * @return total bytes of the root
+	 */
+	public long getRootBytes(int root) {
+		return rootBytes[root];
+	}
+	
+	/**
+	 * This method returns the bytes left if every chunk under a 
+	 * root were stored only once within that root.
+	 * 
+	 * @param root index of the root
+	 * @return unique bytes of the root
+	 */
+	public long getRootUniqueBytes(int root) {
+		return rootUniqueBytes[root];
+	}
+	
+	/**
+	 * This method returns the number of pairs of files sharing at
+	 * least one chunk.
+	 * 
+	 * @return number of pairs
+	 */
+	public long getPairCount() {
+		return pairCount;
+	}
+	
+	/**
+	 * This method returns the number of chunks left out of the pairs
+	 * for being found in more than MAX_SHARERS files.
+	 * 
+	 * @return number of crowded chunks
+	 */
+	public long getCrowdedChunks() {
+		return crowdedChunks;
+	}
+	
+	/**
+	 * This method returns the number of chunk runs spilled to disk.
+	 * 
+	 * @return number of runs
+	 */
+	public int getRunCount() {
+		return chunks.getRunCount();
+	}
+	
+	/**
+	 * This method closes and deletes every file of the store.
+	 */
+	public synchronized void close() {
+		chunks.close();
+		shared.close();
+		ranked.close();
+		paths.close();
+		try {
+			table.close();
+			if (tableIn != null)
+				tableIn.close();
+			Files.deleteIfExists(tableFile);
+			Files.deleteIfExists(dir);
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method reads a field of a file's record in the file table.
+	 * 
+	 * @param file number of the file
+	 * @param offset offset of the field within the record
+	 * @return value of the field
+	 * @throws IOException if the table cannot be read
+	 */
+	private long readTable(long file, int offset) throws IOException {
+		table.flush();
+		if (tableIn == null)
+			tableIn = new RandomAccessFile(tableFile.toFile(), "r");
+		tableIn.seek((file & 0xFFFFFFFFL) * FILE_RECORD + offset);
+		return tableIn.readLong();
+	}
+}
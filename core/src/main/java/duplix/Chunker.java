@@ -0,0 +1,182 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class splits a stream of bytes into chunks of variable size
+ * with FastCDC, a content-defined chunking algorithm. A gear hash
+ * rolls over the bytes, and a chunk ends where the hash matches a
+ * mask, so an insertion or deletion only moves the boundaries near
+ * it and the chunks after it are found again unchanged.
+ * <p>
+ * No boundary is looked for in the first minimum-size bytes of a
+ * chunk, and a stricter mask is used until a chunk reaches the
+ * average size, with a looser one after it (normalized chunking), 
+ * which keeps chunk sizes close to the average. Every chunk is fed 
+ * to a digest as it goes by, so bytes are never copied or buffered.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Chunker {
+	public static final int DEFAULT_AVERAGE = 8 * 1024;
+	public static final int MIN_AVERAGE = 256;
+	public static final int MAX_AVERAGE = 4 * 1024 * 1024;
+	private static final int WINDOW = 64;
+	private static final int NORMALIZATION = 2;
+	private static final long[] GEAR = new long[256];
+	
+	static {
+		// fixed values, so chunks found by different runs can be compared
+		long seed = 0x6475706C69784344L;
+		for (int i = 0; i < GEAR.length; i++) {
+			long z = (seed += 0x9E3779B97F4A7C15L);
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			GEAR[i] = z ^ (z >>> 31);
+		}
+	}
+	
+	private Digest md;
+	private Sink sink;
+	private int minSize;
+	private int averageSize;
+	private int maxSize;
+	private long smallMask;
+	private long largeMask;
+	private long hash;
+	private int length;
+	
+	/**
+	 * Default and sole constructor initializes variables. The average
+	 * size is rounded down to a power of two; chunks are at least a
+	 * quarter of it, and at most eight times it.
+	 * 
+	 * @param md digest each chunk is fed to
+	 * @param average average size of a chunk in bytes
+	 * @param sink receiver of every chunk found
+	 */
+	public Chunker(Digest md, int average, Sink sink) {
+		this.md = md;
+		this.sink = sink;
+		int bits = 31 - Integer.numberOfLeadingZeros(average);
+		averageSize = 1 << bits;
+		minSize = averageSize / 4;
+		maxSize = averageSize * 8;
+		smallMask = mask(bits + NORMALIZATION);
+		largeMask = mask(bits - NORMALIZATION);
+		hash = 0;
+		length = 0;
+		md.reset();
+	}
+	
+	/**
+	 * This method feeds the remaining bytes of a buffer to the
+	 * chunker, and passes every chunk that ends within them on to
+	 * the sink.
+	 * 
+	 * @param buffer bytes to split
+	 * @throws IOException if the sink cannot take a chunk
+	 */
+	public void update(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		int i = start;
+		while (i < limit) {
+			// no chunk ends this early, and only the last WINDOW bytes count towards the hash
+			if (length < minSize - WINDOW) {
+				int skip = Math.min(minSize - WINDOW - length, limit - i);
+				i += skip;
+				length += skip;
+				continue;
+			}
+			hash = (hash << 1) + GEAR[buffer.get(i++) & 0xFF];
+			length++;
+			if (length >= minSize && 
+					((hash & (length < averageSize ? smallMask : largeMask)) == 0 || length >= maxSize)) {
+				feed(buffer, start, i);
+				cut();
+				start = i;
+			}
+		}
+		feed(buffer, start, limit);
+		buffer.position(limit);
+	}
+	
+	/**
+	 * This method ends the stream, passing the bytes left after the
+	 * last boundary on to the sink as a final chunk.
+	 * 
+	 * @throws IOException if the sink cannot take the chunk
+	 */
+	public void finish() throws IOException {
+		if (length > 0)
+			cut();
+	}
+	
+	/**
+	 * This method passes the current chunk on to the sink and starts
+	 * a new one.
+	 * 
+	 * @throws IOException if the sink cannot take the chunk
+	 */
+	private void cut() throws IOException {
+		int size = length;
+		hash = 0;
+		length = 0;
+		sink.chunk(md.digest(), size);
+	}
+	
+	/**
+	 * This method feeds part of a buffer to the digest, leaving the
+	 * buffer itself untouched.
+	 * 
+	 * @param buffer buffer holding the bytes
+	 * @param from index of the first byte to feed
+	 * @param to index after the last byte to feed
+	 */
+	private void feed(ByteBuffer buffer, int from, int to) {
+		if (from == to)
+			return;
+		ByteBuffer part = buffer.duplicate();
+		part.limit(to);
+		part.position(from);
+		md.update(part);
+	}
+	
+	/**
+	 * This method returns a mask of the given number of high bits,
+	 * which are the bits the gear hash mixes most.
+	 * 
+	 * @param bits number of bits set
+	 * @return mask of the highest bits
+	 */
+	private static long mask(int bits) {
+		return bits <= 0 ? 0 : -1L << (64 - bits);
+	}
+	
+	/**
+	 * A receiver of the chunks of a stream, in order.
+	 */
+	public interface Sink {
+		void chunk(byte[] digest, int length) throws IOException;
+	}
+}
@@ -0,0 +1,428 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs a sharded scan: the tree is split into shards, each
+ * scanned by a ShardWorker in a JVM of its own on the same host, and
+ * the results are merged here. Workers are reached only through the
+ * pipes of their standard input and output.
+ * <p>
+ * The top of the tree is listed breadth first until there are enough
+ * directories to share out, and the directories and the files found
+ * on the way are dealt to the shards in turn. Workers then report the
+ * sizes of their files, and only sizes shared by two or more files 
+ * across every shard are sampled; likewise, only (size, sample) pairs
+ * shared across every shard are hashed. The records of the hashed 
+ * files are merged by digest, and hard links found by more than one 
+ * worker are told apart by their file keys.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Coordinator {
+	public static final long END = -1;
+	public static final int UNITS_PER_SHARD = 8;
+	public static final int COUNTERS = 8;
+	
+	private ArgsParser p;
+	private String[] args;
+	private int shards;
+	private Process[] workers;
+	private DataInputStream[] ins;
+	private DataOutputStream[] outs;
+	private ExecutorService readers;
+	private PrintStream console;
+	private PathTable paths;
+	private DigestIndex map;
+	private ConcurrentHashMap<String, Integer> byKey;
+	private long[] counters;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param parser instance of ArgsParser
+	 * @param args user-entered command-line arguments, passed on to the
+	 * workers
+	 */
+	public Coordinator(ArgsParser parser, String[] args) {
+		p = parser;
+		this.args = args;
+		shards = p.getShards();
+		workers = new Process[shards];
+		ins = new DataInputStream[shards];
+		outs = new DataOutputStream[shards];
+		readers = Executors.newFixedThreadPool(shards);
+		console = p.getFormat().equals(ReportWriter.TEXT) ? System.out : System.err;
+		paths = new PathTable();
+		byKey = new ConcurrentHashMap<>();
+		counters = new long[COUNTERS];
+	}
+	
+	/**
+	 * This method runs the sharded scan and writes the groups of
+	 * duplicates found, with final stats.
+	 */
+	public void run() {
+		console.println("Beginning scan on " + shards + " workers...");
+		try {
+			map = new DigestIndex(paths, Digest.getInstance(p.getAlgorithm()).getLength());
+			startWorkers();
+			share();
+			mergeSizes();
+			mergeSamples();
+			mergeRecords();
+			for (Process worker : workers) {
+				if (worker.waitFor() != 0)
+					throw new IOException("A worker exited with status " + worker.exitValue());
+			}
+		} catch (Exception e) {
+			System.err.println("Error: " + (e instanceof EOFException ? 
+					"a worker stopped before its shard was scanned" : e.getMessage()));
+			for (Process worker : workers) {
+				if (worker != null)
+					worker.destroy();
+			}
+			System.exit(1);
+		} finally {
+			readers.shutdown();
+		}
+		report();
+	}
+	
+	/**
+	 * This method starts every worker with the user-entered arguments,
+	 * less the number of shards, and an even share of the threads.
+	 * 
+	 * @throws IOException if a worker cannot be started
+	 */
+	private void startWorkers() throws IOException {
+		ArrayList<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DupliX.class.getName());
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-shards"))
+				i++;
+			else
+				command.add(args[i]);
+		}
+		command.add("-worker");
+		command.add("-t");
+		command.add(String.valueOf(Math.max(1, p.getThreads() / shards)));
+		
+		for (int i = 0; i < shards; i++) {
+			workers[i] = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			ins[i] = new DataInputStream(new BufferedInputStream(workers[i].getInputStream(), 
+					ShardWorker.BUFFER_SIZE));
+			outs[i] = new DataOutputStream(new BufferedOutputStream(workers[i].getOutputStream(), 
+					ShardWorker.BUFFER_SIZE));
+		}
+	}
+	
+	/**
+	 * This method lists the top of the tree breadth first, until there
+	 * are enough directories to share out, and deals the directories
+	 * and files found to the workers in turn. The filter is applied to 
+	 * every entry listed here, as the walk would.
+	 * 
+	 * @throws IOException if a worker cannot be written to
+	 */
+	private void share() throws IOException {
+		Filter filter = p.getFilter();
+		ArrayDeque<Path> pending = new ArrayDeque<>();
+		for (Path root : IO.getRoots(p.getSrcDirs())) {
+			if (Files.isDirectory(root))
+				pending.add(root);
+		}
+		ArrayList<Path> files = new ArrayList<>();
+		while (!pending.isEmpty() && pending.size() < UNITS_PER_SHARD * shards) {
+			Path dir = pending.removeFirst();
+			counters[0]++;
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path file : stream) {
+					try {
+						BasicFileAttributes attrs = Files.readAttributes(file, 
+								BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						if (attrs.isDirectory()) {
+							if (!p.recursiveMode())
+								continue;
+							if (filter.acceptDir(file, attrs))
+								pending.addLast(file);
+							else
+								counters[1]++;
+						}
+						else if (attrs.isRegularFile()) {
+							if (filter.acceptFile(file, attrs))
+								files.add(file);
+							else {
+								counters[3]++;
+								counters[4] += attrs.size();
+							}
+						}
+					} catch (IOException e) { error(file, e); }
+				}
+			} catch (IOException | DirectoryIteratorException e) { error(dir, e); }
+		}
+		
+		ArrayList<Path> dirs = new ArrayList<>(pending);
+		Collections.sort(dirs);
+		Collections.sort(files);
+		ArrayList<ArrayList<Path>> dirShares = new ArrayList<>();
+		ArrayList<ArrayList<Path>> fileShares = new ArrayList<>();
+		for (int i = 0; i < shards; i++) {
+			dirShares.add(new ArrayList<>());
+			fileShares.add(new ArrayList<>());
+		}
+		for (int i = 0; i < dirs.size(); i++)
+			dirShares.get(i % shards).add(dirs.get(i));
+		// files go on where the directories left off, to even out the shares
+		for (int i = 0; i < files.size(); i++)
+			fileShares.get((dirs.size() + i) % shards).add(files.get(i));
+		
+		for (int i = 0; i < shards; i++) {
+			outs[i].writeInt(dirShares.get(i).size() + fileShares.get(i).size());
+			for (Path dir : dirShares.get(i)) {
+				outs[i].writeBoolean(true);
+				outs[i].writeUTF(dir.toString());
+			}
+			for (Path file : fileShares.get(i)) {
+				outs[i].writeBoolean(false);
+				outs[i].writeUTF(file.toString());
+			}
+			outs[i].flush();
+		}
+	}
+	
+	/**
+	 * This method merges the number of files of each size reported by
+	 * the workers, and sends each worker back its sizes shared by two
+	 * or more files.
+	 * 
+	 * @throws Exception if a worker cannot be read or written
+	 */
+	private void mergeSizes() throws Exception {
+		List<long[][]> counts = fromEach(in -> {
+			long[][] sizes = new long[in.readInt()][];
+			for (int i = 0; i < sizes.length; i++)
+				sizes[i] = new long[] { in.readLong(), in.readInt() };
+			return sizes;
+		});
+		HashMap<Long, Long> totals = new HashMap<>();
+		for (long[][] sizes : counts) {
+			for (long[] size : sizes)
+				totals.merge(size[0], size[1], Long::sum);
+		}
+		for (int i = 0; i < shards; i++) {
+			ArrayList<Long> keep = new ArrayList<>();
+			for (long[] size : counts.get(i)) {
+				if (totals.get(size[0]) > 1)
+					keep.add(size[0]);
+			}
+			outs[i].writeInt(keep.size());
+			for (long size : keep)
+				outs[i].writeLong(size);
+			outs[i].flush();
+		}
+	}
+	
+	/**
+	 * This method merges the number of files of each (size, sample)
+	 * reported by the workers, and sends each worker back its pairs
+	 * shared by two or more files.
+	 * 
+	 * @throws Exception if a worker cannot be read or written
+	 */
+	private void mergeSamples() throws Exception {
+		List<long[][]> counts = fromEach(in -> {
+			long[][] samples = new long[in.readInt()][];
+			for (int i = 0; i < samples.length; i++)
+				samples[i] = new long[] { in.readLong(), in.readLong(), in.readInt() };
+			return samples;
+		});
+		HashMap<Long, HashMap<Long, Long>> totals = new HashMap<>();
+		for (long[][] samples : counts) {
+			for (long[] sample : samples)
+				totals.computeIfAbsent(sample[0], k -> new HashMap<>()).merge(sample[1], sample[2], Long::sum);
+		}
+		for (int i = 0; i < shards; i++) {
+			ArrayList<long[]> keep = new ArrayList<>();
+			for (long[] sample : counts.get(i)) {
+				if (totals.get(sample[0]).get(sample[1]) > 1)
+					keep.add(sample);
+			}
+			outs[i].writeInt(keep.size());
+			for (long[] sample : keep) {
+				outs[i].writeLong(sample[0]);
+				outs[i].writeLong(sample[1]);
+			}
+			outs[i].flush();
+		}
+	}
+	
+	/**
+	 * This method adds the records of every hashed file to the index,
+	 * as they arrive, and adds up the counters of the workers.
+	 * 
+	 * @throws Exception if a worker cannot be read
+	 */
+	private void mergeRecords() throws Exception {
+		List<long[]> shardCounters = fromEach(in -> {
+			for (long size = in.readLong(); size != END; size = in.readLong()) {
+				byte[] digest = new byte[in.readInt()];
+				in.readFully(digest);
+				String key = in.readUTF();
+				int[] ids = new int[in.readInt()];
+				for (int i = 0; i < ids.length; i++)
+					ids[i] = paths.add(IO.getFile(in.readUTF()));
+				
+				// a hard link another worker has found already
+				Integer first = key.isEmpty() ? null : byKey.putIfAbsent(key, ids[0]);
+				if (first == null) {
+					map.add(digest, ids[0], size);
+					first = ids[0];
+				}
+				for (int id : ids) {
+					if (id != first)
+						map.addAlias(first, id);
+				}
+			}
+			long[] shard = new long[COUNTERS];
+			for (int i = 0; i < COUNTERS; i++)
+				shard[i] = in.readLong();
+			return shard;
+		});
+		for (long[] shard : shardCounters) {
+			for (int i = 0; i < COUNTERS; i++)
+				counters[i] += shard[i];
+		}
+	}
+	
+	/**
+	 * This method writes the groups of duplicates found and the final
+	 * stats.
+	 */
+	private void report() {
+		String expFile = p.saveMode() ? p.getExpFile() : null;
+		ReportWriter report = null;
+		ArrayList<DupeGroup> list = map.getDuplicates();
+		long reclaimable = 0;
+		for (DupeGroup group : list) {
+			if (report == null)
+				report = new ReportWriter(expFile, p.getFormat(), p.getAlgorithm());
+			report.writeGroup(group, false);
+			reclaimable += group.getReclaimable();
+		}
+		
+		StringBuilder stats = new StringBuilder();
+		if (list.isEmpty())
+			stats.append("No duplicate files found!" + System.lineSeparator());
+		else
+			stats.append("Final stats: " + list.size() + " sets of duplicate files found." + 
+					System.lineSeparator() + reclaimable + " bytes taken up by duplicate copies." + 
+					System.lineSeparator());
+		stats.append(shards + " workers listed " + counters[0] + " directories and " + counters[2] + 
+				" files, and read " + (counters[5] + counters[6]) + " bytes." + System.lineSeparator());
+		if (counters[1] > 0 || counters[3] > 0)
+			stats.append("Filters pruned " + counters[1] + " directories and skipped " + 
+					counters[3] + " files (" + counters[4] + " bytes)." + System.lineSeparator());
+		if (counters[7] > 0)
+			stats.append(counters[7] + " paths could not be read." + System.lineSeparator());
+		if (report != null && report.isText())
+			report.write(stats.toString());
+		else
+			console.print(stats.toString());
+		
+		if (report != null) {
+			if (report.close() && p.saveMode())
+				console.println("File saved to " + expFile);
+			else if (p.saveMode())
+				console.println("Unable to save to " + expFile);
+		}
+	}
+	
+	/**
+	 * This method reads a reply from every worker at once, so no
+	 * worker waits on a full pipe while another is read.
+	 * 
+	 * @param reader reader of a single reply
+	 * @return replies, by worker
+	 * @throws Exception if a worker cannot be read
+	 */
+	private <T> List<T> fromEach(Reply<T> reader) throws Exception {
+		ArrayList<Future<T>> futures = new ArrayList<>();
+		for (DataInputStream in : ins) {
+			Callable<T> read = () -> reader.read(in);
+			futures.add(readers.submit(read));
+		}
+		ArrayList<T> replies = new ArrayList<>();
+		for (Future<T> future : futures) {
+			try {
+				replies.add(future.get());
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		return replies;
+	}
+	
+	/**
+	 * This method records a path that could not be read.
+	 * 
+	 * @param path path that could not be read
+	 * @param e cause of the error
+	 */
+	private void error(Path path, Exception e) {
+		counters[7]++;
+		System.err.println("Error reading " + path + ": " + e.getMessage());
+	}
+	
+	/**
+	 * A reader of one reply from a worker.
+	 */
+	private interface Reply<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+}
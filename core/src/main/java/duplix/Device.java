@@ -0,0 +1,257 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class holds the queue of hash jobs for the files of one
+ * device (file store), and how many of them may run at once. The
+ * limit is adjusted from the throughput seen: while work is waiting
+ * and throughput holds up, one more job is allowed at a time; when
+ * throughput falls, the limit is halved. A spinning disk starts at
+ * one job, a network file system at two, and anything else at the
+ * full number of workers.
+ * <p>
+ * On a spinning disk, jobs are taken in path order, sweeping in one
+ * direction and wrapping around, so files that were written together
+ * are mostly read together rather than in the order they were queued.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Device {
+	public static final long WINDOW = 250L * 1000 * 1000;
+	public static final double TOLERANCE = 0.1;
+	public static final String SOLID = "solid";
+	public static final String ROTATIONAL = "rotational";
+	public static final String NETWORK = "network";
+	public static final String SHARED = "shared";
+	private static final Set<String> NETWORK_TYPES = new HashSet<>(Arrays.asList(
+			"nfs", "nfs4", "cifs", "smb3", "smbfs", "9p", "afs", "ceph", "glusterfs", "fuse.sshfs"));
+	private static final Comparator<Task> PATH_ORDER = 
+			Comparator.comparing((Task task) -> task.key).thenComparingLong(task -> task.seq);
+	
+	private String name;
+	private String kind;
+	private int limit;
+	private int maxLimit;
+	private int active;
+	private ArrayDeque<Task> fifo;
+	private TreeSet<Task> ordered;
+	private Task last;
+	private long windowStart;
+	private long windowBytes;
+	private int windowJobs;
+	private double lastRate;
+	private long bytes;
+	private long jobs;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param name name of the device
+	 * @param kind kind of the device: solid, rotational, network or shared
+	 * @param maxLimit most jobs ever allowed to run at once
+	 */
+	public Device(String name, String kind, int maxLimit) {
+		this.name = name;
+		this.kind = kind;
+		this.maxLimit = maxLimit;
+		if (kind.equals(ROTATIONAL))
+			limit = 1;
+		else if (kind.equals(NETWORK))
+			limit = Math.min(2, maxLimit);
+		else
+			limit = maxLimit;
+		active = 0;
+		if (kind.equals(ROTATIONAL))
+			ordered = new TreeSet<>(PATH_ORDER);
+		else
+			fifo = new ArrayDeque<>();
+		windowStart = System.nanoTime();
+		lastRate = 0;
+	}
+	
+	/**
+	 * This method creates the device a file store lives on, finding
+	 * out what kind of device it is.
+	 * 
+	 * @param store file store of the device
+	 * @param maxLimit most jobs ever allowed to run at once
+	 * @return device of the file store
+	 */
+	public static Device of(FileStore store, int maxLimit) {
+		String kind = SOLID;
+		if (NETWORK_TYPES.contains(store.type().toLowerCase()))
+			kind = NETWORK;
+		else if (isRotational(store))
+			kind = ROTATIONAL;
+		return new Device(store.name(), kind, maxLimit);
+	}
+	
+	/**
+	 * This method checks whether a file store is on a spinning disk.
+	 * On Linux, the store's device is looked up in /sys/class/block;
+	 * a partition is looked up through the disk it belongs to. Where
+	 * this cannot be found out, the disk is taken not to spin.
+	 * 
+	 * @param store file store to check
+	 * @return boolean value indicating if the store is on a spinning disk
+	 */
+	public static boolean isRotational(FileStore store) {
+		if (!store.name().startsWith("/dev/"))
+			return false;
+		try {
+			Path dev = Paths.get(store.name()).toRealPath();
+			Path block = Paths.get("/sys/class/block", dev.getFileName().toString());
+			if (!Files.exists(block.resolve("queue/rotational")))
+				block = block.toRealPath().getParent();
+			List<String> lines = Files.readAllLines(block.resolve("queue/rotational"));
+			return !lines.isEmpty() && lines.get(0).trim().equals("1");
+		} catch (IOException | RuntimeException e) { return false; }
+	}
+	
+	/**
+	 * This method queues a job.
+	 * 
+	 * @param task job to queue
+	 */
+	void add(Task task) {
+		if (ordered != null)
+			ordered.add(task);
+		else
+			fifo.add(task);
+	}
+	
+	/**
+	 * This method checks whether a job is waiting and another may start.
+	 * 
+	 * @return boolean value indicating if a job can be taken
+	 */
+	boolean isReady() {
+		return active < limit && !isEmpty();
+	}
+	
+	private boolean isEmpty() {
+		return ordered != null ? ordered.isEmpty() : fifo.isEmpty();
+	}
+	
+	/**
+	 * This method takes the next job to run.
+	 * 
+	 * @return next job
+	 */
+	Task take() {
+		Task task;
+		if (ordered != null) {
+			task = last == null ? null : ordered.ceiling(last);
+			if (task == null)
+				task = ordered.first();
+			ordered.remove(task);
+			last = task;
+		}
+		else {
+			task = fifo.poll();
+		}
+		active++;
+		return task;
+	}
+	
+	/**
+	 * This method records a job as done and, at the end of each
+	 * window, adjusts the limit. The limit is only changed while
+	 * work is waiting, as only then does it bound the throughput.
+	 * 
+	 * @param task job that is done
+	 * @param now time it was done, in nanoseconds
+	 */
+	void done(Task task, long now) {
+		active--;
+		bytes += task.bytes;
+		jobs++;
+		windowBytes += task.bytes;
+		windowJobs++;
+		long elapsed = now - windowStart;
+		if (kind.equals(SHARED) || elapsed < WINDOW || windowJobs < limit)
+			return;
+		
+		double rate = windowBytes * 1e9 / elapsed;
+		if (!isEmpty()) {
+			if (rate >= lastRate * (1 - TOLERANCE))
+				limit = Math.min(maxLimit, limit + 1);
+			else
+				limit = Math.max(1, limit / 2);
+			lastRate = rate;
+		}
+		windowStart = now;
+		windowBytes = 0;
+		windowJobs = 0;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public String getKind() {
+		return kind;
+	}
+	
+	public int getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * This method returns the device as a JSON object.
+	 * 
+	 * @return String representation of the device
+	 */
+	public String toJson() {
+		return "{\"name\":\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\",\"kind\":\"" + kind + 
+				"\",\"limit\":" + limit + ",\"jobs\":" + jobs + ",\"bytes\":" + bytes + "}";
+	}
+	
+	/**
+	 * A job queued on a device, with the path it orders by and the
+	 * number of bytes it is expected to read.
+	 */
+	static class Task {
+		final HashEngine.Job job;
+		final String key;
+		final long seq;
+		final long bytes;
+		
+		Task(HashEngine.Job job, String key, long seq, long bytes) {
+			this.job = job;
+			this.key = key;
+			this.seq = seq;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class is the common interface of the digest algorithms files
+ * can be hashed with. Besides any algorithm of the platform's 
+ * MessageDigest (such as SHA-256 or SHA-512/256), it provides XXH64,
+ * a fast non-cryptographic 64-bit hash. Only the SHA-2 and SHA-3 
+ * families count as cryptographic; older algorithms such as MD5 and
+ * SHA-1 have known collisions, and are treated like XXH64.
+ * <p>
+ * Equal non-cryptographic digests are very likely, but not certain,
+ * to mean equal contents, so groups found with such a digest must be
+ * confirmed before any file is moved or deleted.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public abstract class Digest {
+	public static final String DEFAULT = XxHash64.ALGORITHM;
+	public static final String CONFIRM = "SHA-256";
+	
+	/**
+	 * This method returns a new digest of the given algorithm.
+	 * 
+	 * @param algorithm name of the digest algorithm
+	 * @return new digest instance
+	 * @throws NoSuchAlgorithmException if the algorithm is unavailable
+	 */
+	public static Digest getInstance(String algorithm) throws NoSuchAlgorithmException {
+		if (algorithm.equalsIgnoreCase(XxHash64.ALGORITHM))
+			return new XxHash64();
+		return new Jdk(MessageDigest.getInstance(algorithm));
+	}
+	
+	/**
+	 * This method returns the name of the algorithm.
+	 * 
+	 * @return name of the digest algorithm
+	 */
+	public abstract String getAlgorithm();
+	
+	/**
+	 * This method returns the length of the digest in bytes.
+	 * 
+	 * @return length of the digest
+	 */
+	public abstract int getLength();
+	
+	/**
+	 * This method returns a value indicating whether equal digests
+	 * can be trusted to mean equal contents.
+	 * 
+	 * @return boolean value indicating if the algorithm is cryptographic
+	 */
+	public abstract boolean isCryptographic();
+	
+	/**
+	 * This method resets the digest for a new calculation.
+	 */
+	public abstract void reset();
+	
+	/**
+	 * This method feeds the remaining bytes of a buffer to the digest.
+	 * 
+	 * @param buffer bytes to add to the digest
+	 */
+	public abstract void update(ByteBuffer buffer);
+	
+	/**
+	 * This method completes the calculation and resets the digest.
+	 * 
+	 * @return digest of every byte fed since the last reset
+	 */
+	public abstract byte[] digest();
+	
+	/**
+	 * A digest backed by a MessageDigest of the platform.
+	 */
+	private static class Jdk extends Digest {
+		private MessageDigest md;
+		
+		Jdk(MessageDigest md) {
+			this.md = md;
+		}
+		
+		public String getAlgorithm() {
+			return md.getAlgorithm();
+		}
+		
+		public int getLength() {
+			return md.getDigestLength();
+		}
+		
+		public boolean isCryptographic() {
+			// MD5 and SHA-1, among others, have known collisions
+			String name = md.getAlgorithm().toUpperCase();
+			return name.startsWith("SHA3-") || 
+					(name.startsWith("SHA-") && !name.equals("SHA-1"));
+		}
+		
+		public void reset() {
+			md.reset();
+		}
+		
+		public void update(ByteBuffer buffer) {
+			md.update(buffer);
+		}
+		
+		public byte[] digest() {
+			return md.digest();
+		}
+	}
+}
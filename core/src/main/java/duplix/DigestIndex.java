@@ -0,0 +1,285 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class maps digests to the files that produced them, using
+ * flat primitive arrays rather than one object per file. Digests are
+ * stored as raw bytes in an open-addressing table, and the files of
+ * each digest form a chain of int file ids, one int per file. Paths
+ * themselves live in a PathTable.
+ * <p>
+ * Each slot is keyed on the size of its files as well as their digest,
+ * so files of different sizes never share a group, even should a short
+ * or non-cryptographic digest collide.
+ * <p>
+ * It is safe to add to from several hashing threads at once. Groups
+ * are read back in digest order and files within a group in path 
+ * order, so they are the same regardless of which thread discovered
+ * or hashed which file, or when.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class DigestIndex {
+	private static final int INITIAL_SLOTS = 1024;
+	
+	private PathTable paths;
+	private int digestLength;
+	private byte[] keys;
+	private int[] heads;
+	private int[] counts;
+	private long[] sizes;
+	private int used;
+	private int[] next;
+	private ArrayList<long[]> pairs;
+	private HashMap<Integer, ArrayList<Integer>> aliases;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param paths table holding the path of every file id
+	 * @param digestLength length in bytes of every digest
+	 */
+	public DigestIndex(PathTable paths, int digestLength) {
+		this.paths = paths;
+		this.digestLength = digestLength;
+		keys = new byte[INITIAL_SLOTS * digestLength];
+		heads = new int[INITIAL_SLOTS];
+		counts = new int[INITIAL_SLOTS];
+		sizes = new long[INITIAL_SLOTS];
+		Arrays.fill(heads, -1);
+		used = 0;
+		next = new int[INITIAL_SLOTS];
+		pairs = new ArrayList<>();
+		aliases = new HashMap<>();
+	}
+	
+	/**
+	 * This method adds a file to the index.
+	 * 
+	 * @param digest digest of the file
+	 * @param fileId id of the file in the path table
+	 * @param size size in bytes of the file
+	 */
+	public synchronized void add(byte[] digest, int fileId, long size) {
+		if (used * 2 >= heads.length)
+			resize();
+		if (fileId >= next.length)
+			next = Arrays.copyOf(next, Math.max(next.length * 2, fileId + 1));
+		
+		int slot = find(keys, sizes, heads, digest, size);
+		if (heads[slot] < 0) {
+			System.arraycopy(digest, 0, keys, slot * digestLength, digestLength);
+			sizes[slot] = size;
+			used++;
+		}
+		next[fileId] = heads[slot];
+		heads[slot] = fileId;
+		counts[slot]++;
+	}
+	
+	/**
+	 * This method adds two files known to be identical, without
+	 * a digest, as a group of their own.
+	 * 
+	 * @param first id of the first file in the path table
+	 * @param second id of the second file in the path table
+	 * @param size size in bytes of each file
+	 */
+	public synchronized void addPair(int first, int second, long size) {
+		pairs.add(new long[] { first, second, size });
+	}
+	
+	/**
+	 * This method records a hard link to a file in the index, to be
+	 * listed as an alias of the file rather than as a file of its own.
+	 * 
+	 * @param fileId id of the linked file in the path table
+	 * @param aliasId id of the hard link in the path table
+	 */
+	public synchronized void addAlias(int fileId, int aliasId) {
+		aliases.computeIfAbsent(fileId, k -> new ArrayList<>()).add(aliasId);
+	}
+	
+	/**
+	 * This method returns every group of two or more files that
+	 * share a digest and size, in digest order, followed by the pairs added
+	 * without a digest. Files within a group are in path order.
+	 * 
+	 * @return groups of duplicates
+	 */
+	public synchronized ArrayList<DupeGroup> getDuplicates() {
+		ArrayList<Integer> slots = new ArrayList<>();
+		for (int slot = 0; slot < heads.length; slot++) {
+			if (counts[slot] > 1)
+				slots.add(slot);
+		}
+		slots.sort((a, b) -> compareKeys(a, b));
+		
+		ArrayList<DupeGroup> list = new ArrayList<>();
+		for (int slot : slots) {
+			ArrayList<String> group = new ArrayList<>();
+			HashMap<String, List<String>> groupAliases = new HashMap<>();
+			for (int id = heads[slot]; id >= 0; id = next[id])
+				group.add(getWithAliases(id, groupAliases));
+			Collections.sort(group);
+			byte[] digest = Arrays.copyOfRange(keys, slot * digestLength, (slot + 1) * digestLength);
+			list.add(new DupeGroup(digest, sizes[slot], new LinkedList<>(group), groupAliases));
+		}
+		
+		ArrayList<DupeGroup> pairList = new ArrayList<>();
+		for (long[] pair : pairs) {
+			ArrayList<String> group = new ArrayList<>();
+			HashMap<String, List<String>> groupAliases = new HashMap<>();
+			group.add(getWithAliases((int) pair[0], groupAliases));
+			group.add(getWithAliases((int) pair[1], groupAliases));
+			Collections.sort(group);
+			pairList.add(new DupeGroup(null, pair[2], new LinkedList<>(group), groupAliases));
+		}
+		pairList.sort((a, b) -> a.getFiles().getFirst().compareTo(b.getFiles().getFirst()));
+		list.addAll(pairList);
+		return list;
+	}
+	
+	/**
+	 * This method returns the heap used by the index itself,
+	 * not counting the path table.
+	 * 
+	 * @return size in bytes
+	 */
+	public synchronized long bytesUsed() {
+		return keys.length + 4L * (heads.length + counts.length + next.length) + 8L * sizes.length 
+				+ 24L * pairs.size();
+	}
+	
+	/**
+	 * This method returns the path of a file, and adds the paths of
+	 * its aliases, if it has any, to a given map. Whichever link was
+	 * found first, the first in path order stands for the file, so
+	 * groups read the same on every run.
+	 * 
+	 * @param fileId id of the file in the path table
+	 * @param groupAliases map of the aliases of a group, by file
+	 * @return path of the file
+	 */
+	private String getWithAliases(int fileId, HashMap<String, List<String>> groupAliases) {
+		ArrayList<Integer> ids = aliases.get(fileId);
+		if (ids == null)
+			return paths.get(fileId);
+		ArrayList<String> links = new ArrayList<>();
+		links.add(paths.get(fileId));
+		for (int id : ids)
+			links.add(paths.get(id));
+		Collections.sort(links);
+		String path = links.remove(0);
+		groupAliases.put(path, links);
+		return path;
+	}
+	
+	/**
+	 * This method returns the slot holding a digest and size, or the
+	 * empty slot where they belong.
+	 * 
+	 * @param keys digest bytes of every slot
+	 * @param sizes file size of every slot
+	 * @param heads first file id of every slot, -1 if empty
+	 * @param digest digest to look for
+	 * @param size file size to look for
+	 * @return slot of the digest and size
+	 */
+	private int find(byte[] keys, long[] sizes, int[] heads, byte[] digest, long size) {
+		int mask = heads.length - 1;
+		int slot = hash(digest, size) & mask;
+		while (heads[slot] >= 0 && !keyEquals(keys, sizes, slot, digest, size))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+	
+	/**
+	 * This method doubles the number of slots.
+	 */
+	private void resize() {
+		if ((long) keys.length * 2 > Integer.MAX_VALUE - 8)
+			throw new IllegalStateException("Digest index is full");
+		byte[] newKeys = new byte[keys.length * 2];
+		int[] newHeads = new int[heads.length * 2];
+		int[] newCounts = new int[counts.length * 2];
+		long[] newSizes = new long[sizes.length * 2];
+		Arrays.fill(newHeads, -1);
+		byte[] digest = new byte[digestLength];
+		for (int slot = 0; slot < heads.length; slot++) {
+			if (heads[slot] < 0)
+				continue;
+			System.arraycopy(keys, slot * digestLength, digest, 0, digestLength);
+			int newSlot = find(newKeys, newSizes, newHeads, digest, sizes[slot]);
+			System.arraycopy(digest, 0, newKeys, newSlot * digestLength, digestLength);
+			newHeads[newSlot] = heads[slot];
+			newCounts[newSlot] = counts[slot];
+			newSizes[newSlot] = sizes[slot];
+		}
+		keys = newKeys;
+		heads = newHeads;
+		counts = newCounts;
+		sizes = newSizes;
+	}
+	
+	/**
+	 * This method returns the hash of a digest and size, from which probing starts.
+	 */
+	private int hash(byte[] digest, long size) {
+		int h = Long.hashCode(size);
+		for (int i = 0; i < Math.min(digestLength, 8); i++)
+			h = h * 31 + digest[i];
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * This method returns a value indicating whether a slot holds a given digest and size.
+	 */
+	private boolean keyEquals(byte[] keys, long[] sizes, int slot, byte[] digest, long size) {
+		if (sizes[slot] != size)
+			return false;
+		int base = slot * digestLength;
+		for (int i = 0; i < digestLength; i++) {
+			if (keys[base + i] != digest[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * This method orders two slots by digest, then by size.
+	 */
+	private int compareKeys(int a, int b) {
+		for (int i = 0; i < digestLength; i++) {
+			int x = keys[a * digestLength + i] & 0xFF;
+			int y = keys[b * digestLength + i] & 0xFF;
+			if (x != y)
+				return x - y;
+		}
+		return Long.compare(sizes[a], sizes[b]);
+	}
+}
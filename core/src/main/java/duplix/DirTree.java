@@ -0,0 +1,316 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class finds directories whose whole trees are identical. While
+ * the tree is walked, it counts the files and inner directories of
+ * every directory. Once the groups of duplicate files are known, the
+ * digest of each directory is calculated bottom up, Merkle style, from
+ * the sorted names and digests of its entries. 
+ * <p>
+ * A directory only gets a digest if every file in it belongs to a 
+ * group of duplicates and every inner directory has a digest. Any
+ * directory holding a unique file, an entry the walk skipped or could
+ * not read, or anything but files and directories counts as unique,
+ * so acting on a whole directory never touches a file nobody looked at.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class DirTree {
+	private static final byte FILE = 0;
+	private static final byte DIR = 1;
+	private static final byte[] EMPTY = new byte[0];
+	
+	private ConcurrentHashMap<Path, Node> nodes;
+	private String algorithm;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param algorithm name of the digest algorithm of the scan
+	 */
+	public DirTree(String algorithm) {
+		nodes = new ConcurrentHashMap<>();
+		this.algorithm = algorithm;
+	}
+	
+	/**
+	 * This method records a directory about to be listed by the walk.
+	 * Called from several threads.
+	 * 
+	 * @param dir directory discovered during the walk
+	 */
+	public void directory(Path dir) {
+		nodes.put(dir, new Node());
+		Node parent = dir.getParent() == null ? null : nodes.get(dir.getParent());
+		if (parent != null)
+			parent.dirs.incrementAndGet();
+	}
+	
+	/**
+	 * This method records a regular file found by the walk. Called
+	 * from several threads.
+	 * 
+	 * @param file file discovered during the walk
+	 */
+	public void file(Path file) {
+		Node parent = nodes.get(file.getParent());
+		if (parent != null)
+			parent.files.incrementAndGet();
+	}
+	
+	/**
+	 * This method records an empty file found by the walk. Empty files
+	 * are all alike, so they need no group to tell directories apart. 
+	 * Only called by the thread listing the directory of the file.
+	 * 
+	 * @param file empty file discovered during the walk
+	 */
+	public void emptyFile(Path file) {
+		Node parent = nodes.get(file.getParent());
+		if (parent == null)
+			return;
+		parent.files.incrementAndGet();
+		parent.children.add(new Child(FILE, file.getFileName().toString(), EMPTY, 0, 1));
+		parent.filesDone++;
+	}
+	
+	/**
+	 * This method records a directory whose entries were not all
+	 * looked at. Called from several threads.
+	 * 
+	 * @param dir directory with skipped or unreadable entries
+	 */
+	public void incomplete(Path dir) {
+		Node node = nodes.get(dir);
+		if (node != null)
+			node.incomplete = true;
+	}
+	
+	/**
+	 * This method records every directory above a given path as 
+	 * incomplete, so none of them is acted on as a whole.
+	 * 
+	 * @param path path to protect
+	 */
+	public void protect(Path path) {
+		for (Path dir = path.getParent(); dir != null; dir = dir.getParent())
+			incomplete(dir);
+	}
+	
+	/**
+	 * This method calculates the digest of every directory and returns
+	 * the groups of identical directories. A directory inside another
+	 * directory with a twin is left out, since it is part of a larger
+	 * group already. Paths of directories end with a separator.
+	 * 
+	 * @param groups groups of duplicate files, as they will be reported
+	 * @return groups of identical directories, in digest order
+	 * @throws NoSuchAlgorithmException if the algorithm is unavailable
+	 */
+	public ArrayList<DupeGroup> getDuplicates(List<DupeGroup> groups) throws NoSuchAlgorithmException {
+		addFiles(groups);
+		Digest md = Digest.getInstance(algorithm);
+		Digest confirm = md.isCryptographic() ? null : Digest.getInstance(Digest.CONFIRM);
+		
+		ArrayList<Path> dirs = new ArrayList<>(nodes.keySet());
+		// deepest first, so inner directories are done before their parents
+		dirs.sort((a, b) -> b.getNameCount() - a.getNameCount());
+		HashMap<ByteBuffer, ArrayList<Path>> byKey = new HashMap<>();
+		for (Path dir : dirs) {
+			Node node = nodes.get(dir);
+			if (node.incomplete || node.dirsDone != node.dirs.get() || node.filesDone != node.files.get())
+				continue;
+			for (Child child : node.children) {
+				node.size += child.size;
+				node.count += child.count;
+			}
+			node.digest = digest(md, node.children);
+			byte[] key = node.digest;
+			if (confirm != null) {
+				byte[] strong = digest(confirm, node.children);
+				key = Arrays.copyOf(node.digest, node.digest.length + strong.length);
+				System.arraycopy(strong, 0, key, node.digest.length, strong.length);
+			}
+			node.children = null;
+			if (node.count > 0)
+				byKey.computeIfAbsent(ByteBuffer.wrap(key), k -> new ArrayList<>()).add(dir);
+			
+			Node parent = dir.getParent() == null ? null : nodes.get(dir.getParent());
+			if (parent != null) {
+				parent.children.add(new Child(DIR, dir.getFileName().toString(), key, node.size, node.count));
+				parent.dirsDone++;
+			}
+		}
+		
+		HashSet<Path> twinned = new HashSet<>();
+		for (ArrayList<Path> members : byKey.values()) {
+			if (members.size() > 1)
+				twinned.addAll(members);
+		}
+		ArrayList<DupeGroup> list = new ArrayList<>();
+		for (ArrayList<Path> members : byKey.values()) {
+			if (members.size() < 2)
+				continue;
+			ArrayList<String> top = new ArrayList<>();
+			for (Path dir : members) {
+				if (!hasTwinnedParent(dir, twinned))
+					top.add(dir.toString() + File.separator);
+			}
+			if (top.size() < 2)
+				continue;
+			top.sort(null);
+			Node node = nodes.get(members.get(0));
+			list.add(new DupeGroup(node.digest, node.size, new LinkedList<>(top)));
+		}
+		list.sort((a, b) -> Arrays.compareUnsigned(a.getDigest(), b.getDigest()));
+		return list;
+	}
+	
+	/**
+	 * This method adds every file of the groups of duplicates, and its
+	 * aliases, to its directory. Each file is identified by the digest
+	 * of its group, unless the group shares its digest with another, 
+	 * as when confirmation splits one, or has none, as when files are 
+	 * compared directly; then by the position of the group.
+	 * 
+	 * @param groups groups of duplicate files
+	 */
+	private void addFiles(List<DupeGroup> groups) {
+		HashMap<ByteBuffer, Integer> digests = new HashMap<>();
+		for (DupeGroup group : groups) {
+			if (group.getDigest() != null)
+				digests.merge(ByteBuffer.wrap(group.getDigest()), 1, Integer::sum);
+		}
+		for (int i = 0; i < groups.size(); i++) {
+			DupeGroup group = groups.get(i);
+			byte[] id = group.getDigest();
+			if (id == null || digests.get(ByteBuffer.wrap(id)) > 1)
+				id = ByteBuffer.allocate(4).putInt(i).array();
+			for (String file : group.getFiles()) {
+				addFile(file, id, group.getSize());
+				for (String alias : group.getAliases(file))
+					addFile(alias, id, group.getSize());
+			}
+		}
+	}
+	
+	/**
+	 * This method adds a file of a group of duplicates to its directory.
+	 * 
+	 * @param file path of the file
+	 * @param id identity of the contents of the file
+	 * @param size size of the file in bytes
+	 */
+	private void addFile(String file, byte[] id, long size) {
+		Path path = IO.getFile(file);
+		Node parent = nodes.get(path.getParent());
+		if (parent == null)
+			return;
+		parent.children.add(new Child(FILE, path.getFileName().toString(), id, size, 1));
+		parent.filesDone++;
+	}
+	
+	/**
+	 * This method calculates the digest of a directory from the sorted
+	 * names and identities of its entries, and adds up their sizes.
+	 * 
+	 * @param md digest to calculate with
+	 * @param children entries of the directory
+	 * @return digest of the directory
+	 */
+	private static byte[] digest(Digest md, ArrayList<Child> children) {
+		children.sort((a, b) -> a.name.compareTo(b.name));
+		md.reset();
+		for (Child child : children) {
+			byte[] name = child.name.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer entry = ByteBuffer.allocate(1 + 4 + name.length + 4 + child.id.length);
+			entry.put(child.type).putInt(name.length).put(name).putInt(child.id.length).put(child.id);
+			entry.flip();
+			md.update(entry);
+		}
+		return md.digest();
+	}
+	
+	/**
+	 * This method checks whether any directory above a given one has
+	 * a twin.
+	 * 
+	 * @param dir directory to check
+	 * @param twinned directories with a twin
+	 * @return true if an outer directory has a twin
+	 */
+	private static boolean hasTwinnedParent(Path dir, HashSet<Path> twinned) {
+		for (Path parent = dir.getParent(); parent != null; parent = parent.getParent()) {
+			if (twinned.contains(parent))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * A directory of the tree. The counters are filled in by the walk;
+	 * the rest once the groups of duplicates are known.
+	 */
+	private static class Node {
+		AtomicInteger files = new AtomicInteger();
+		AtomicInteger dirs = new AtomicInteger();
+		volatile boolean incomplete;
+		ArrayList<Child> children = new ArrayList<>();
+		int filesDone;
+		int dirsDone;
+		byte[] digest;
+		long size;
+		long count;
+	}
+	
+	/**
+	 * An entry of a directory: a file or an inner directory.
+	 */
+	private static class Child {
+		byte type;
+		String name;
+		byte[] id;
+		long size;
+		long count;
+		
+		Child(byte type, String name, byte[] id, long size, long count) {
+			this.type = type;
+			this.name = name;
+			this.id = id;
+			this.size = size;
+			this.count = count;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds one group of duplicate files along with the 
+ * digest and size they share. Groups found by comparing a pair of
+ * files directly have no digest. Each file of the group is a separate
+ * physical file; hard links to it are listed as its aliases.
+ * Files under a reference root, if any, are listed last, and are
+ * always kept.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class DupeGroup {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	private byte[] digest;
+	private long size;
+	private LinkedList<String> files;
+	private Map<String, List<String>> aliases;
+	private int references;
+	
+	/**
+	 * Constructor for a group without aliases.
+	 * 
+	 * @param digest digest shared by the files, or null
+	 * @param size size in bytes of each file
+	 * @param files paths of the files
+	 */
+	public DupeGroup(byte[] digest, long size, LinkedList<String> files) {
+		this(digest, size, files, Collections.emptyMap());
+	}
+	
+	/**
+	 * Constructor for a group whose files may have aliases.
+	 * 
+	 * @param digest digest shared by the files, or null
+	 * @param size size in bytes of each file
+	 * @param files paths of the files
+	 * @param aliases paths of the hard links to each file, by file
+	 */
+	public DupeGroup(byte[] digest, long size, LinkedList<String> files, 
+			Map<String, List<String>> aliases) {
+		this.digest = digest;
+		this.size = size;
+		this.files = files;
+		this.aliases = aliases;
+		references = 0;
+	}
+	
+	/**
+	 * This method returns a new group with the same digest and size
+	 * but different files, as when a group is split by confirmation.
+	 * 
+	 * @param files paths of the files
+	 * @return group of the given files
+	 */
+	public DupeGroup withFiles(LinkedList<String> files) {
+		return new DupeGroup(digest, size, files, aliases);
+	}
+	
+	/**
+	 * This method returns a new group with the same digest and size
+	 * but different files, the last of which are reference files.
+	 * 
+	 * @param files paths of the files, reference files last
+	 * @param references number of reference files
+	 * @return group of the given files
+	 */
+	public DupeGroup withReferences(LinkedList<String> files, int references) {
+		DupeGroup group = new DupeGroup(digest, size, files, aliases);
+		group.references = references;
+		return group;
+	}
+	
+	/**
+	 * This method returns the number of reference files, which are
+	 * the last files of the group.
+	 * 
+	 * @return number of reference files
+	 */
+	public int getReferences() {
+		return references;
+	}
+	
+	/**
+	 * This method returns the number of files kept when duplicates
+	 * are removed: every reference file, or else the last file.
+	 * 
+	 * @return number of files kept, from the end of the group
+	 */
+	public int getKept() {
+		return Math.max(1, references);
+	}
+	
+	/**
+	 * This method returns the digest shared by the files.
+	 * 
+	 * @return digest, or null if the files were compared directly
+	 */
+	public byte[] getDigest() {
+		return digest;
+	}
+	
+	/**
+	 * This method returns the digest in lowercase hexadecimal.
+	 * 
+	 * @return String representation of the digest, empty if none
+	 */
+	public String getHexDigest() {
+		if (digest == null)
+			return "";
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+		}
+		return new String(hex);
+	}
+	
+	/**
+	 * This method returns the size of each file in the group.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	/**
+	 * This method returns the paths of the files in the group.
+	 * 
+	 * @return list of paths in String form
+	 */
+	public LinkedList<String> getFiles() {
+		return files;
+	}
+	
+	/**
+	 * This method returns a value indicating whether the group is of
+	 * identical directories rather than files. Paths of directories
+	 * end with a separator.
+	 * 
+	 * @return boolean value indicating if the group is of directories
+	 */
+	public boolean isDirectory() {
+		return !files.isEmpty() && files.getFirst().endsWith(File.separator);
+	}
+	
+	/**
+	 * This method returns the hard links to a file of the group.
+	 * 
+	 * @param file path of the file
+	 * @return paths of the aliases, empty if none
+	 */
+	public List<String> getAliases(String file) {
+		return aliases.getOrDefault(file, Collections.emptyList());
+	}
+	
+	/**
+	 * This method returns a value indicating whether any file of the
+	 * group has aliases.
+	 * 
+	 * @return boolean value indicating if the group has aliases
+	 */
+	public boolean hasAliases() {
+		return !aliases.isEmpty();
+	}
+	
+	/**
+	 * This method returns the bytes freed by keeping the files
+	 * counted by getKept and removing the rest. Aliases take no
+	 * space of their own, so only physical files are counted.
+	 * 
+	 * @return reclaimable bytes
+	 */
+	public long getReclaimable() {
+		return size * (files.size() - getKept());
+	}
+}
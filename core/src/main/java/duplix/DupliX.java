@@ -14,16 +14,25 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package duplix;
+
 /**
  * DupliX - Duplicate File Handler (Detect/Relocate/Delete)
  * <p>
  * This program detects duplicate files in a given directory. It decides
- * a file is a duplicate of another when the SHA-256 hash of each is equal.
+ * a file is a duplicate of another when the hash of each is equal. Groups
+ * found with a non-cryptographic hash are confirmed with SHA-256 before
+ * any file is moved or deleted.
  * By default, the program searches for files recursively (includes files
  * within inner folders).
  * <p>
  * Once all duplicates have been found, the appropriate action is taken.
  * That action depends on the user-entered command-line arguments. 
+ * In watch mode, the program then keeps running and reports changes
+ * to the groups of duplicates until it is interrupted. With several
+ * shards, the scan is shared among worker processes by a Coordinator.
+ * In chunk mode, files are split into chunks, and the pairs of files
+ * sharing chunks are reported instead of duplicate files.
  * 
  * @author Bryan R Martinez
  * @version 1.0
@@ -31,12 +40,27 @@
  */
 public class DupliX {
 	public static final int PROMPT_TIME = 1;
+	public static final int SHUTDOWN_TIME = 5;
 	public static void main(String[] args) {
 		ArgsParser parser = new ArgsParser(args);
-		if (parser.parseOK) {
+		if (parser.parseOK && parser.workerMode())
+			new ShardWorker(parser).run();
+		else if (parser.parseOK && parser.getShards() > 1)
+			new Coordinator(parser, args).run();
+		else if (parser.parseOK) {
 			Calculate calc = new Calculate(parser);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				calc.stopWatching();
+				try {
+					calc.join(SHUTDOWN_TIME * 1000);
+				} catch (InterruptedException e) { return; }
+			}));
 			calc.start();
-			new Prompt(calc, PROMPT_TIME);
+			Prompt prompt = new Prompt(calc, PROMPT_TIME);
+			try {
+				calc.join();
+			} catch (InterruptedException e) { System.err.println(e.getMessage()); }
+			prompt.cancel();
 		}
 		else
 			System.out.println("Invalid parse");
@@ -0,0 +1,281 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * This class decides which entries a walk looks at. It is consulted
+ * with the attributes the walk has already read, so no entry is 
+ * opened or read again to be filtered. Directories are pruned before
+ * they are listed; files are skipped before they are indexed.
+ * <p>
+ * Globs without a "/" are matched against the name of an entry, and
+ * other globs against its absolute path. Regular expressions are 
+ * searched for in the absolute path. Empty files are skipped unless
+ * the minimum size is set to 0.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Filter {
+	public static final long DEFAULT_MIN_SIZE = 1;
+	
+	private ArrayList<PathMatcher> includeNames;
+	private ArrayList<PathMatcher> includePaths;
+	private ArrayList<Pattern> includeRegexes;
+	private ArrayList<PathMatcher> excludeNames;
+	private ArrayList<PathMatcher> excludePaths;
+	private ArrayList<Pattern> excludeRegexes;
+	private ArrayList<PathMatcher> pruneNames;
+	private ArrayList<PathMatcher> prunePaths;
+	private long minSize;
+	private long maxSize;
+	private long after;
+	private long before;
+	private boolean skipHidden;
+	
+	/**
+	 * Default and sole constructor initializes a filter that only 
+	 * skips empty files.
+	 */
+	public Filter() {
+		includeNames = new ArrayList<>();
+		includePaths = new ArrayList<>();
+		includeRegexes = new ArrayList<>();
+		excludeNames = new ArrayList<>();
+		excludePaths = new ArrayList<>();
+		excludeRegexes = new ArrayList<>();
+		pruneNames = new ArrayList<>();
+		prunePaths = new ArrayList<>();
+		minSize = DEFAULT_MIN_SIZE;
+		maxSize = Long.MAX_VALUE;
+		after = Long.MIN_VALUE;
+		before = Long.MAX_VALUE;
+		skipHidden = false;
+	}
+	
+	/**
+	 * This method adds a glob files must match. Once any is added, 
+	 * files matching no include glob or expression are skipped.
+	 * 
+	 * @param glob glob to match
+	 * @throws IllegalArgumentException if the glob is invalid
+	 */
+	public void include(String glob) {
+		(glob.contains("/") ? includePaths : includeNames).add(matcher(glob));
+	}
+	
+	/**
+	 * This method adds a regular expression files must contain. Once 
+	 * any is added, files matching no include glob or expression are 
+	 * skipped.
+	 * 
+	 * @param regex expression to search for
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	public void includeRegex(String regex) {
+		includeRegexes.add(Pattern.compile(regex));
+	}
+	
+	/**
+	 * This method adds a glob of files to skip.
+	 * 
+	 * @param glob glob to match
+	 * @throws IllegalArgumentException if the glob is invalid
+	 */
+	public void exclude(String glob) {
+		(glob.contains("/") ? excludePaths : excludeNames).add(matcher(glob));
+	}
+	
+	/**
+	 * This method adds a regular expression of files to skip.
+	 * 
+	 * @param regex expression to search for
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	public void excludeRegex(String regex) {
+		excludeRegexes.add(Pattern.compile(regex));
+	}
+	
+	/**
+	 * This method adds a glob of directories not to list.
+	 * 
+	 * @param glob glob to match
+	 * @throws IllegalArgumentException if the glob is invalid
+	 */
+	public void prune(String glob) {
+		(glob.contains("/") ? prunePaths : pruneNames).add(matcher(glob));
+	}
+	
+	/**
+	 * This method sets the smallest size of file to look at.
+	 * 
+	 * @param minSize size in bytes
+	 */
+	public void setMinSize(long minSize) {
+		this.minSize = minSize;
+	}
+	
+	/**
+	 * This method sets the largest size of file to look at.
+	 * 
+	 * @param maxSize size in bytes
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * This method skips files last modified before a given time.
+	 * 
+	 * @param after time in milliseconds since the epoch
+	 */
+	public void setModifiedAfter(long after) {
+		this.after = after;
+	}
+	
+	/**
+	 * This method skips files last modified at or after a given time.
+	 * 
+	 * @param before time in milliseconds since the epoch
+	 */
+	public void setModifiedBefore(long before) {
+		this.before = before;
+	}
+	
+	/**
+	 * This method sets whether hidden entries, and system entries on
+	 * Windows, are skipped.
+	 * 
+	 * @param skipHidden whether to skip hidden entries
+	 */
+	public void setSkipHidden(boolean skipHidden) {
+		this.skipHidden = skipHidden;
+	}
+	
+	/**
+	 * This method checks whether a directory should be listed.
+	 * 
+	 * @param dir directory found by the walk
+	 * @param attrs attributes of the directory
+	 * @return false if the directory is pruned
+	 */
+	public boolean acceptDir(Path dir, BasicFileAttributes attrs) {
+		if (skipHidden && isHidden(dir, attrs))
+			return false;
+		return !matches(dir, pruneNames, prunePaths, null);
+	}
+	
+	/**
+	 * This method checks whether a file should be looked at.
+	 * 
+	 * @param file regular file found by the walk
+	 * @param attrs attributes of the file
+	 * @return false if the file is skipped
+	 */
+	public boolean acceptFile(Path file, BasicFileAttributes attrs) {
+		long size = attrs.size();
+		if (size < minSize || size > maxSize)
+			return false;
+		if (after != Long.MIN_VALUE || before != Long.MAX_VALUE) {
+			long modified = attrs.lastModifiedTime().toMillis();
+			if (modified < after || modified >= before)
+				return false;
+		}
+		if (skipHidden && isHidden(file, attrs))
+			return false;
+		if (matches(file, excludeNames, excludePaths, excludeRegexes))
+			return false;
+		if (includeNames.isEmpty() && includePaths.isEmpty() && includeRegexes.isEmpty())
+			return true;
+		return matches(file, includeNames, includePaths, includeRegexes);
+	}
+	
+	/**
+	 * This method checks whether an entry matches any of the given
+	 * globs or expressions. The absolute path is only worked out if
+	 * there are path globs or expressions to match it against.
+	 * 
+	 * @param path entry to check
+	 * @param names globs of names
+	 * @param paths globs of absolute paths
+	 * @param regexes expressions to search the absolute path for
+	 * @return true if any matches
+	 */
+	private boolean matches(Path path, ArrayList<PathMatcher> names, ArrayList<PathMatcher> paths, 
+			ArrayList<Pattern> regexes) {
+		Path name = path.getFileName();
+		for (PathMatcher matcher : names) {
+			if (name != null && matcher.matches(name))
+				return true;
+		}
+		if (paths.isEmpty() && (regexes == null || regexes.isEmpty()))
+			return false;
+		Path absolute = path.toAbsolutePath().normalize();
+		for (PathMatcher matcher : paths) {
+			if (matcher.matches(absolute))
+				return true;
+		}
+		if (regexes != null) {
+			String text = absolute.toString();
+			for (Pattern regex : regexes) {
+				if (regex.matcher(text).find())
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * This method checks whether an entry is hidden. Names starting 
+	 * with a dot are hidden everywhere. On Windows the attributes 
+	 * read by the walk carry the hidden and system flags as well.
+	 * 
+	 * @param path entry to check
+	 * @param attrs attributes of the entry
+	 * @return true if the entry is hidden
+	 */
+	private static boolean isHidden(Path path, BasicFileAttributes attrs) {
+		Path name = path.getFileName();
+		if (name != null && name.toString().startsWith("."))
+			return true;
+		if (attrs instanceof DosFileAttributes) {
+			DosFileAttributes dos = (DosFileAttributes) attrs;
+			return dos.isHidden() || dos.isSystem();
+		}
+		return false;
+	}
+	
+	/**
+	 * This method compiles a glob.
+	 * 
+	 * @param glob glob to compile
+	 * @return matcher of the glob
+	 * @throws IllegalArgumentException if the glob is invalid
+	 */
+	private static PathMatcher matcher(String glob) {
+		return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+	}
+}
@@ -0,0 +1,276 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the digests of previously hashed files in a local
+ * file, so a later scan only needs to hash files that have changed.
+ * An entry is trusted only while the size, last-modified time and
+ * file key (inode on most systems) of its file are unchanged.
+ * <p>
+ * The cache file is a header followed by a log of records. New 
+ * digests are appended as they are calculated. When the scan ends,
+ * entries whose files have vanished are evicted, and the log is 
+ * rewritten without them, or without superseded records, whenever
+ * either makes up a large part of it.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class HashCache {
+	private static final int MAGIC = 0x44555843;
+	private static final int VERSION = 1;
+	
+	private Path file;
+	private String algorithm;
+	private ConcurrentHashMap<String, Entry> entries;
+	private DataOutputStream log;
+	private long records;
+	private boolean rewrite;
+	private int hits;
+	
+	/**
+	 * Default and sole constructor loads the cache file, if any.
+	 * 
+	 * @param loc String representation of the cache file location
+	 * @param algorithm name of the digest algorithm in use
+	 * @param invalidate whether to discard the existing cache, which
+	 * is then emptied straight away
+	 */
+	public HashCache(String loc, String algorithm, boolean invalidate) {
+		file = Paths.get(loc);
+		this.algorithm = algorithm;
+		entries = new ConcurrentHashMap<>();
+		records = 0;
+		rewrite = true;
+		hits = 0;
+		if (!invalidate && Files.exists(file))
+			load();
+		// the old cache must not outlive a run that happens to hash nothing
+		if (invalidate) {
+			try {
+				openLog();
+				log.flush();
+			} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+		}
+	}
+	
+	/**
+	 * This method returns the stored digest of a file, if the file
+	 * has not changed since it was stored.
+	 * 
+	 * @param path file to look up
+	 * @param attrs current attributes of the file
+	 * @return stored digest, or null if there is no valid entry
+	 */
+	public byte[] lookup(Path path, BasicFileAttributes attrs) {
+		Entry entry = entries.get(path.toString());
+		if (entry == null)
+			return null;
+		entry.seen = true;
+		if (entry.size != attrs.size() 
+				|| entry.modified != attrs.lastModifiedTime().toMillis()
+				|| !entry.key.equals(fileKey(attrs)))
+			return null;
+		synchronized (this) {
+			hits++;
+		}
+		return entry.digest;
+	}
+	
+	/**
+	 * This method stores the digest of a file and appends it
+	 * to the cache file.
+	 * 
+	 * @param path file that was hashed
+	 * @param attrs attributes of the file when it was hashed
+	 * @param digest digest of the file
+	 */
+	public synchronized void put(Path path, BasicFileAttributes attrs, byte[] digest) {
+		Entry entry = new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), 
+				fileKey(attrs), digest);
+		entry.seen = true;
+		entries.put(path.toString(), entry);
+		try {
+			if (log == null)
+				openLog();
+			write(log, path.toString(), entry);
+			records++;
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method returns the number of files whose digest
+	 * was found in the cache.
+	 * 
+	 * @return number of cache hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+	
+	/**
+	 * This method evicts the entries of files that no longer exist,
+	 * compacts the cache file if worthwhile and closes it.
+	 */
+	public synchronized void close() {
+		int evicted = 0;
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			if (!e.getValue().seen && !Files.exists(Paths.get(e.getKey()))) {
+				entries.remove(e.getKey());
+				evicted++;
+			}
+		}
+		try {
+			if (log != null)
+				log.close();
+			log = null;
+			if (evicted > 0 || records > 2 * entries.size() || !Files.exists(file))
+				compact();
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method rewrites the cache file with one record per
+	 * live entry, replacing the old file atomically.
+	 * 
+	 * @throws IOException if the cache file cannot be written
+	 */
+	private void compact() throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, "duplix-cache", ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			writeHeader(out);
+			for (Map.Entry<String, Entry> e : entries.entrySet())
+				write(out, e.getKey(), e.getValue());
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		records = entries.size();
+	}
+	
+	/**
+	 * This method reads the cache file. Later records replace earlier
+	 * records of the same path. A cache written for another digest 
+	 * algorithm, or in another format, is ignored.
+	 */
+	private void load() {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(algorithm))
+				return;
+			rewrite = false;
+			while (true) {
+				String path;
+				try {
+					path = in.readUTF();
+				} catch (EOFException e) { break; }
+				long size = in.readLong();
+				long modified = in.readLong();
+				String key = in.readUTF();
+				byte[] digest = new byte[in.readUnsignedByte()];
+				in.readFully(digest);
+				entries.put(path, new Entry(size, modified, key, digest));
+				records++;
+			}
+		} catch (IOException e) {
+			// a torn final record from an interrupted run is not fatal
+			rewrite = true;
+			System.err.println("Hash cache truncated after " + records + " records.");
+		}
+	}
+	
+	/**
+	 * This method opens the cache file for appending, starting a
+	 * new file if there is none, or if the existing one was ignored.
+	 * 
+	 * @throws IOException if the cache file cannot be opened
+	 */
+	private void openLog() throws IOException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		if (rewrite || !Files.exists(file)) {
+			log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+			writeHeader(log);
+			records = 0;
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				write(log, e.getKey(), e.getValue());
+				records++;
+			}
+			rewrite = false;
+		}
+		else {
+			log = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(file, StandardOpenOption.APPEND)));
+		}
+	}
+	
+	private void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(algorithm);
+	}
+	
+	private static void write(DataOutputStream out, String path, Entry entry) throws IOException {
+		out.writeUTF(path);
+		out.writeLong(entry.size);
+		out.writeLong(entry.modified);
+		out.writeUTF(entry.key);
+		out.writeByte(entry.digest.length);
+		out.write(entry.digest);
+	}
+	
+	private static String fileKey(BasicFileAttributes attrs) {
+		Object key = attrs.fileKey();
+		return key == null ? "" : key.toString();
+	}
+	
+	/**
+	 * A cached digest along with the file state it is valid for.
+	 */
+	private static class Entry {
+		final long size;
+		final long modified;
+		final String key;
+		final byte[] digest;
+		volatile boolean seen;
+		
+		Entry(long size, long modified, String key, byte[] digest) {
+			this.size = size;
+			this.modified = modified;
+			this.key = key;
+			this.digest = Arrays.copyOf(digest, digest.length);
+		}
+	}
+}
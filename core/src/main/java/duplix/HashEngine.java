@@ -0,0 +1,295 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class hashes files on a fixed number of worker threads.
+ * Jobs are queued per device, so each disk of a tree that spans
+ * several is read at once, and each at the number of jobs it does
+ * best with (see Device). The workers take jobs from the devices in
+ * turn, from any device with work waiting and room under its limit.
+ * The queues are bounded as a whole, so a producer that outpaces
+ * the workers is simply made to wait. Each worker owns its own
+ * digest, read buffer and sampler, so no hashing state is shared
+ * between threads.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class HashEngine {
+	public static final int QUEUE_SIZE = 1024;
+	public static final int DIR_CACHE_SIZE = 4096;
+	
+	private int threads;
+	private Thread[] workers;
+	private Device shared;
+	private ArrayList<Device> devices;
+	private HashMap<Object, Device> byId;
+	private Map<Path, Device> byDir;
+	private int turn;
+	private int queued;
+	private int pending;
+	private long sequence;
+	private Metrics metrics;
+	
+	/**
+	 * Default and sole constructor starts the worker threads.
+	 * 
+	 * @param threads number of worker threads
+	 * @param algorithm name of the digest algorithm
+	 * @param sampleSize number of bytes read at each sample point
+	 * @param metrics metrics to record work and errors in, or null
+	 * @throws NoSuchAlgorithmException if the algorithm is unavailable
+	 */
+	public HashEngine(int threads, String algorithm, int sampleSize, Metrics metrics) 
+			throws NoSuchAlgorithmException {
+		this.threads = threads;
+		workers = new Thread[threads];
+		shared = new Device("shared", Device.SHARED, threads);
+		devices = new ArrayList<>();
+		devices.add(shared);
+		byId = new HashMap<>();
+		byDir = Collections.synchronizedMap(new LinkedHashMap<Path, Device>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, Device> eldest) {
+				return size() > DIR_CACHE_SIZE;
+			}
+		});
+		turn = 0;
+		queued = 0;
+		pending = 0;
+		sequence = 0;
+		this.metrics = metrics;
+		for (int i = 0; i < threads; i++) {
+			Hasher hasher = new Hasher(Digest.getInstance(algorithm));
+			Sampler sampler = new Sampler(sampleSize);
+			hasher.setMetrics(metrics);
+			sampler.setMetrics(metrics);
+			workers[i] = new Thread(() -> work(hasher, sampler), "duplix-hash-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+	
+	/**
+	 * This method queues a job that reads no file in particular. Such
+	 * jobs may run on every worker at once.
+	 * 
+	 * @param job job to run on a worker thread
+	 */
+	public void submit(Job job) {
+		submit(null, 0, job);
+	}
+	
+	/**
+	 * This method queues a job on the device of the file it reads,
+	 * waiting for room if every queue is full.
+	 * 
+	 * @param file file the job reads, or null
+	 * @param bytes number of bytes the job is expected to read
+	 * @param job job to run on a worker thread
+	 */
+	public void submit(Path file, long bytes, Job job) {
+		Device device = file == null ? shared : deviceOf(file);
+		synchronized (this) {
+			while (queued >= QUEUE_SIZE) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			device.add(new Device.Task(job, file == null ? "" : file.toString(), sequence++, bytes));
+			queued++;
+			pending++;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * This method waits until every job submitted so far has run.
+	 */
+	public synchronized void await() {
+		while (pending > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * This method returns the number of jobs waiting for a worker.
+	 * 
+	 * @return depth of the queues
+	 */
+	public synchronized long getQueueDepth() {
+		return queued;
+	}
+	
+	/**
+	 * This method returns every device jobs were queued on, with its
+	 * current limit and the work done on it.
+	 * 
+	 * @return String representation of the devices as a JSON array
+	 */
+	public synchronized String getDevices() {
+		StringBuilder json = new StringBuilder("[");
+		for (Device device : devices) {
+			if (device == shared && devices.size() > 1)
+				continue;
+			json.append(json.length() > 1 ? "," : "").append(device.toJson());
+		}
+		return json.append("]").toString();
+	}
+	
+	/**
+	 * This method stops the worker threads once the queue is empty.
+	 */
+	public void shutdown() {
+		await();
+		for (Thread worker : workers)
+			worker.interrupt();
+	}
+	
+	/**
+	 * This method finds the device a file is on. Devices are looked up
+	 * by the file's directory, through a cache of recent directories,
+	 * and told apart by device number where the platform has one.
+	 * Files whose device cannot be found share the unlimited queue.
+	 * 
+	 * @param file file to find the device of
+	 * @return device of the file
+	 */
+	private Device deviceOf(Path file) {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir == null)
+			return shared;
+		Device device = byDir.get(dir);
+		if (device != null)
+			return device;
+		try {
+			Object id;
+			try {
+				id = Files.getAttribute(dir, "unix:dev", LinkOption.NOFOLLOW_LINKS);
+			} catch (UnsupportedOperationException | IllegalArgumentException e) { id = null; }
+			synchronized (this) {
+				device = id == null ? null : byId.get(id);
+			}
+			if (device == null) {
+				FileStore store = Files.getFileStore(dir);
+				synchronized (this) {
+					Object key = id == null ? store : id;
+					device = byId.get(key);
+					if (device == null) {
+						device = Device.of(store, threads);
+						byId.put(key, device);
+						devices.add(device);
+					}
+				}
+			}
+		} catch (IOException e) { device = shared; }
+		byDir.put(dir, device);
+		return device;
+	}
+	
+	/**
+	 * This method returns the next device with a job that can be
+	 * taken, taking the devices in turn.
+	 * 
+	 * @return device to take a job from, or null if there is none
+	 */
+	private Device nextDevice() {
+		for (int i = 0; i < devices.size(); i++) {
+			Device device = devices.get((turn + i) % devices.size());
+			if (device.isReady()) {
+				turn = (turn + i + 1) % devices.size();
+				return device;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * This method is the main loop of each worker thread.
+	 * 
+	 * @param hasher hasher owned by the worker
+	 * @param sampler sampler owned by the worker
+	 */
+	private void work(Hasher hasher, Sampler sampler) {
+		while (true) {
+			Device device;
+			Device.Task task;
+			synchronized (this) {
+				while ((device = nextDevice()) == null) {
+					try {
+						wait();
+					} catch (InterruptedException e) { return; }
+				}
+				task = device.take();
+				queued--;
+				notifyAll();
+			}
+			try {
+				task.job.run(hasher, sampler);
+			} catch (Exception e) { 
+				System.err.println(e.getMessage()); 
+				if (metrics != null)
+					metrics.error();
+			} finally {
+				finished(device, task);
+			}
+		}
+	}
+	
+	/**
+	 * This method marks a job as finished.
+	 * 
+	 * @param device device the job was queued on
+	 * @param task job that is finished
+	 */
+	private synchronized void finished(Device device, Device.Task task) {
+		device.done(task, System.nanoTime());
+		pending--;
+		notifyAll();
+	}
+	
+	/**
+	 * A unit of work run on one of the worker threads.
+	 */
+	public interface Job {
+		void run(Hasher hasher, Sampler sampler) throws Exception;
+	}
+}
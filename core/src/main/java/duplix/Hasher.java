@@ -0,0 +1,132 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class streams files through a digest in constant memory.
+ * Files of every size are read through a single reusable direct 
+ * buffer. Nothing is mapped, since a mapping is only released once
+ * the garbage collector gets to it, and the heap of a scan stays too
+ * flat for that to happen often. No part of a file is ever copied 
+ * onto the heap as a whole, so any file size can be hashed, or split
+ * into chunks.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Hasher {
+	public static final int BUFFER_SIZE = 256 * 1024;
+	
+	private Digest md;
+	private ByteBuffer buffer;
+	private Metrics metrics;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param md digest to stream files through
+	 */
+	public Hasher(Digest md) {
+		this.md = md;
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+	
+	/**
+	 * This method returns the digest files are streamed through.
+	 * 
+	 * @return digest of this hasher
+	 */
+	public Digest getDigest() {
+		return md;
+	}
+	
+	/**
+	 * This method sets the metrics each file hashed is recorded in.
+	 * 
+	 * @param metrics metrics of the scan, or null
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * This method calculates the digest of a given file.
+	 * 
+	 * @param file file to hash
+	 * @param size size of the file in bytes
+	 * @return digest of the file contents
+	 * @throws IOException if the file cannot be read
+	 */
+	public byte[] hash(Path file, long size) throws IOException {
+		md.reset();
+		read(file, size, md::update);
+		return md.digest();
+	}
+	
+	/**
+	 * This method splits a given file into chunks. Each chunk is
+	 * hashed with the digest the chunker was given, which is usually
+	 * the digest of this hasher.
+	 * 
+	 * @param file file to split
+	 * @param size size of the file in bytes
+	 * @param chunker chunker to stream the file through
+	 * @throws IOException if the file cannot be read, or a chunk 
+	 * cannot be stored
+	 */
+	public void chunk(Path file, long size, Chunker chunker) throws IOException {
+		read(file, size, chunker::update);
+		chunker.finish();
+	}
+	
+	/**
+	 * This method streams a file to a consumer of bytes through the
+	 * reusable direct buffer.
+	 * 
+	 * @param file file to read
+	 * @param size size of the file in bytes
+	 * @param to consumer of the bytes read
+	 * @throws IOException if the file cannot be read
+	 */
+	private void read(Path file, long size, Feed to) throws IOException {
+		long start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer.clear();
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				to.update(buffer);
+				buffer.clear();
+			}
+		}
+		if (metrics != null)
+			metrics.hashed(size, System.nanoTime() - start);
+	}
+	
+	/**
+	 * A consumer of the bytes of a file, a buffer at a time.
+	 */
+	private interface Feed {
+		void update(ByteBuffer buffer) throws IOException;
+	}
+}
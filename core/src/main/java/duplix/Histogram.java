@@ -0,0 +1,111 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records a distribution of latencies in nanoseconds, in
+ * buckets by power of two. Recording is lock-free and allocates
+ * nothing, so it can be called on every file from every thread.
+ * Percentiles are accurate to within a factor of two, which is enough
+ * to tell a local disk from a slow mount.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Histogram {
+	private AtomicLongArray buckets;
+	private LongAdder count;
+	private LongAdder total;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 */
+	public Histogram() {
+		buckets = new AtomicLongArray(64);
+		count = new LongAdder();
+		total = new LongAdder();
+	}
+	
+	/**
+	 * This method records one latency.
+	 * 
+	 * @param nanos latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+		count.increment();
+		total.add(nanos);
+	}
+	
+	/**
+	 * This method returns the number of latencies recorded.
+	 * 
+	 * @return number of latencies
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * This method returns the mean latency.
+	 * 
+	 * @return mean latency in milliseconds
+	 */
+	public double getMeanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : total.sum() / 1e6 / n;
+	}
+	
+	/**
+	 * This method returns the latency below which a given fraction
+	 * of the recorded latencies fall, as the upper bound of its bucket.
+	 * 
+	 * @param fraction fraction between 0 and 1, e.g. 0.99
+	 * @return latency in milliseconds
+	 */
+	public double getPercentileMillis(double fraction) {
+		long n = count.sum();
+		if (n == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * n);
+		long seen = 0;
+		for (int i = 0; i < 64; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return Math.pow(2, i + 1) / 1e6;
+		}
+		return Math.pow(2, 64) / 1e6;
+	}
+	
+	/**
+	 * This method returns a JSON object summarizing the distribution.
+	 * 
+	 * @return String representation of the summary
+	 */
+	public String toJson() {
+		return String.format(Locale.ROOT, "{\"count\":%d,\"meanMs\":%.3f,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f}",
+				getCount(), getMeanMillis(), getPercentileMillis(0.5), 
+				getPercentileMillis(0.9), getPercentileMillis(0.99));
+	}
+}
@@ -0,0 +1,435 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class provides a set of static input/output helper
+ * functions in an effort to centralize all input/output methods.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class IO {
+	public static final int LINKED = 0;
+	public static final int CROSS_DEVICE = 1;
+	public static final int LINK_FAILED = 2;
+	
+	/**
+	 * This method returns a value indicating whether a given 
+	 * location exits or not.
+	 * 
+	 * @param loc String representation of a file path
+	 * @return boolean value indicating if location exists
+	 */
+	public static boolean exists(String loc) {
+		Path path = Paths.get(loc);
+		if (Files.exists(path))
+			return true;
+		else return false;
+	}
+	
+	/**
+	 * This method returns a value indicating whether a given
+	 * directory location exists or not. If it does not exist, an
+	 * attempt is made to create the directory. 
+	 * 
+	 * @param loc String representation of a directory path
+	 * @return boolean value indicating if location exists
+	 */
+	public static boolean dirExists(String loc) {
+		Path path = Paths.get(loc);
+		if (Files.exists(path) && Files.isDirectory(path))
+			return true;
+		else {
+			try {
+				Files.createDirectories(path);
+				return true;
+			} catch (IOException e) { 
+				System.err.println("Error " + e.getMessage());
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * This method returns a String representation of the default
+	 * directory. If the directory does not exist, an attempt is
+	 * made to create it. 
+	 * 
+	 * @return String representation of default directory
+	 */
+	public static String mkDefaultDir() {
+		String path = System.getProperty("user.dir") + File.separator 
+					+ "MovedFiles" + File.separator;
+		if (dirExists(path))
+			return path;
+		try {
+			Files.createDirectory(Paths.get(path));
+		}  catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+		return path;
+	}
+	
+	/**
+	 * This method returns the Path of a file when provided
+	 * the String representation of its location. 
+	 * 
+	 * @param loc String representation of a file path
+	 * @return Path representation of given file
+	 */
+	public static Path getFile(String loc) {
+		Path path = Paths.get(loc);
+		return path;
+	}
+	
+	/**
+	 * This method returns the Paths of the given directories, leaving 
+	 * out every directory equal to or nested in another, so no file
+	 * below them is walked twice.
+	 * 
+	 * @param dirs String representations of the directories
+	 * @return Path representations of the outermost directories
+	 */
+	public static ArrayList<Path> getRoots(List<String> dirs) {
+		ArrayList<Path> absolute = new ArrayList<>();
+		for (String dir : dirs)
+			absolute.add(getFile(dir).toAbsolutePath().normalize());
+		
+		ArrayList<Path> result = new ArrayList<>();
+		for (int i = 0; i < dirs.size(); i++) {
+			boolean nested = false;
+			for (int j = 0; j < dirs.size() && !nested; j++) {
+				Path other = absolute.get(j);
+				if (i != j && absolute.get(i).startsWith(other))
+					nested = !other.equals(absolute.get(i)) || j < i;
+			}
+			if (!nested)
+				result.add(getFile(dirs.get(i)));
+		}
+		return result;
+	}
+	
+	public static String getFilePath(String fileName) {
+		fileName = fileName.replace("\\", "/");
+		String[] seg = fileName.split("/");
+		StringBuilder path = new StringBuilder();
+		for (int i = 0; i < seg.length; i++) {
+			if (i == seg.length-1)
+				break;
+			path.append(seg[i] + File.separator);
+		}
+		return path.toString();
+	}
+	
+	/**
+	 * This method returns file name and the file's extension
+	 * when provided with a complete location of the file.
+	 * 
+	 * @param fileName String representation of file path
+	 * @return String representation of file name and extension
+	 */
+	public static String getFileName(String fileName) {
+		fileName = fileName.replace("\\", "/");
+		String[] seg = fileName.split("/");
+		String name = seg[seg.length-1];
+		return name;
+	}
+	
+	/**
+	 * This method returns file name only when provided with a
+	 * location of the file. 
+	 * 
+	 * @param fileName String representation of file path
+	 * @return String representation of file name
+	 */
+	public static String getFileNameNoExtension(String fileName) {
+		fileName = fileName.replace("\\", "/");
+		String[] seg = fileName.split("/");
+		String name = seg[seg.length-1];
+		String[] nameExt = name.split("\\.");
+		return nameExt[0];
+	}
+	
+	/**
+	 * This method returns file extension only when provided
+	 * with a location of the file. 
+	 * 
+	 * @param fileName String representation of file path
+	 * @return String representation of file extension
+	 */
+	public static String getFileExtension(String fileName) {
+		String[] seg = fileName.split("\\.");
+		return seg[seg.length-1];
+	}
+	
+	/**
+	 * This method creates a file to a given location and writes 
+	 * to it a given message.
+	 * 
+	 * @param loc String representation of output file location
+	 * @param msg message to output to file
+	 * @return value indicating if write operation was successful
+	 */
+	public static boolean saveFile(String loc, String msg) {
+		Path path = Paths.get(loc);
+		try {
+			Files.write(path, msg.getBytes());
+			return true;
+		} catch (Exception e) { return false; }
+	}
+	
+	/**
+	 * This method reserves a name for a file in a given directory
+	 * by creating an empty file under it. If the name is taken, a
+	 * number is appended to it until a free one is found. Creating
+	 * the file fails if it exists, so two threads can never reserve 
+	 * the same name.
+	 * 
+	 * @param dir String representation of directory path
+	 * @param fileName name of the file, with its extension
+	 * @return Path of the reserved file
+	 * @throws IOException if no file can be created in the directory
+	 */
+	public static Path reserveName(String dir, String fileName) throws IOException {
+		int dot = fileName.lastIndexOf('.');
+		String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+		String ext = dot > 0 ? fileName.substring(dot) : "";
+		String candidate = fileName;
+		for (int num = 0; ; num++) {
+			try {
+				return Files.createFile(Paths.get(dir, candidate));
+			} catch (FileAlreadyExistsException e) {
+				candidate = name + "-(" + num + ")" + ext;
+			}
+		}
+	}
+	
+	/**
+	 * This method reserves a name for a directory in a given directory
+	 * by creating an empty directory under it, numbering the name like
+	 * reserveName does if it is taken.
+	 * 
+	 * @param dir String representation of directory path
+	 * @param dirName name of the directory
+	 * @return Path of the reserved directory
+	 * @throws IOException if no directory can be created in the directory
+	 */
+	public static Path reserveDir(String dir, String dirName) throws IOException {
+		String candidate = dirName;
+		for (int num = 0; ; num++) {
+			try {
+				return Files.createDirectory(Paths.get(dir, candidate));
+			} catch (FileAlreadyExistsException e) {
+				candidate = dirName + "-(" + num + ")";
+			}
+		}
+	}
+	
+	/**
+	 * This method copies the contents of a directory tree into a given
+	 * directory. Links are copied as links, not followed.
+	 * 
+	 * @param path String representation of directory path
+	 * @param dest Path of the destination directory, which must exist
+	 * @throws IOException if an entry cannot be copied
+	 */
+	public static void copyTree(String path, Path dest) throws IOException {
+		Path source = getFile(path);
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Path target = dest.resolve(source.relativize(dir).toString());
+				if (!dir.equals(source))
+					Files.copy(dir, target, StandardCopyOption.COPY_ATTRIBUTES);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.copy(file, dest.resolve(source.relativize(file).toString()), 
+						StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	/**
+	 * This method deletes a directory and everything below it. Links
+	 * are deleted, not followed.
+	 * 
+	 * @param path String representation of directory path
+	 * @throws IOException if an entry cannot be deleted
+	 */
+	public static void deleteTree(String path) throws IOException {
+		Path root = getFile(path);
+		if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS))
+			return;
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null)
+					throw e;
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	/**
+	 * This method moves a file over a given destination by renaming
+	 * it, which only works within one file store.
+	 * 
+	 * @param path String representation of file path
+	 * @param dest Path of the destination
+	 * @throws AtomicMoveNotSupportedException if the destination is
+	 * on another file store
+	 * @throws IOException if the file cannot be moved
+	 */
+	public static void renameFile(String path, Path dest) throws IOException {
+		Files.move(getFile(path), dest, StandardCopyOption.ATOMIC_MOVE, 
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * This method moves a file over a given destination by copying
+	 * it, then deleting the original.
+	 * 
+	 * @param path String representation of file path
+	 * @param dest Path of the destination
+	 * @throws IOException if the file cannot be copied or deleted
+	 */
+	public static void copyFile(String path, Path dest) throws IOException {
+		Files.copy(getFile(path), dest, StandardCopyOption.REPLACE_EXISTING, 
+				StandardCopyOption.COPY_ATTRIBUTES);
+		Files.delete(getFile(path));
+	}
+	
+	/**
+	 * This method attempts to delete a file, given only the
+	 * String representation of the file path.
+	 * 
+	 * @param path String representation of file path
+	 * @return value indicating if delete operation was successful
+	 */
+	public static boolean deleteFile(String path) {
+		try {
+			Files.deleteIfExists(getFile(path));
+			return true;
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * This method returns a value indicating whether two paths
+	 * already refer to the same file, as hard links do.
+	 * 
+	 * @param path String representation of file path
+	 * @param other String representation of other file path
+	 * @return value indicating if both paths are the same file
+	 */
+	public static boolean sameFile(String path, String other) {
+		try {
+			return Files.isSameFile(getFile(path), getFile(other));
+		} catch (IOException e) { return false; }
+	}
+	
+	/**
+	 * This method returns the number of hard links to a file, where
+	 * the platform can tell.
+	 * 
+	 * @param file file to look up
+	 * @return number of links to the file, or 1 if it is unknown
+	 */
+	public static int getLinkCount(Path file) {
+		try {
+			return (Integer) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException e) { return 1; }
+	}
+	
+	/**
+	 * This method replaces a file with a link to an identical file.
+	 * The link is made under a temporary name in the same directory
+	 * and then renamed over the file, so the path never goes missing.
+	 * With reflink, a copy-on-write clone is made instead of a hard
+	 * link, which only some file systems support.
+	 * 
+	 * @param path String representation of file path to replace
+	 * @param target String representation of file path to link to
+	 * @param reflink whether to clone rather than hard link
+	 * @return LINKED, CROSS_DEVICE if the files are on different file
+	 * stores, or LINK_FAILED
+	 */
+	public static int linkFile(String path, String target, boolean reflink) {
+		Path file = getFile(path);
+		Path temp = file.resolveSibling("." + file.getFileName() + ".duplix-" + System.nanoTime());
+		try {
+			if (reflink) {
+				Process cp = new ProcessBuilder("cp", "--reflink=always", "--preserve=all", 
+						target, temp.toString()).redirectErrorStream(true).start();
+				cp.getInputStream().transferTo(OutputStream.nullOutputStream());
+				try {
+					if (cp.waitFor() != 0)
+						throw new IOException("Unable to clone " + target);
+				} catch (InterruptedException e) {
+					// keep the interrupt, so the caller can stop too
+					cp.destroyForcibly();
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while cloning " + target);
+				}
+			}
+			else
+				Files.createLink(temp, getFile(target));
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			return LINKED;
+		} catch (IOException e) {
+			try {
+				Files.deleteIfExists(temp);
+				if (!Files.getFileStore(file).equals(Files.getFileStore(getFile(target))))
+					return CROSS_DEVICE;
+			} catch (IOException ex) { return LINK_FAILED; }
+			System.err.println("Error: " + e.getMessage());
+			return LINK_FAILED;
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class collects the counters and latencies of every stage of a
+ * scan: files and bytes found by the walk, sampled and hashed by the
+ * hash engine, cache lookups, errors, and actions taken. Counters are
+ * LongAdders, so the walker, hasher and action threads can all update
+ * them without contending. The metrics can be read live through JMX,
+ * and are written as a JSON summary at the end of the run.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Metrics implements MetricsMBean {
+	public static final String NAME = "duplix:type=Metrics";
+	
+	private long start;
+	private volatile String stage;
+	private LongAdder filesFound;
+	private LongAdder bytesFound;
+	private LongAdder dirs;
+	private LongAdder dirsPruned;
+	private LongAdder filesSkipped;
+	private LongAdder bytesSkipped;
+	private LongAdder filesSampled;
+	private LongAdder bytesSampled;
+	private LongAdder filesHashed;
+	private LongAdder bytesHashed;
+	private LongAdder bytesQueued;
+	private LongAdder cacheHits;
+	private LongAdder cacheMisses;
+	private LongAdder errors;
+	private LongAdder actions;
+	private Histogram listLatency;
+	private Histogram sampleLatency;
+	private Histogram hashLatency;
+	private Histogram actionLatency;
+	private volatile LongSupplier hashQueue;
+	private volatile LongSupplier actionQueue;
+	private volatile Supplier<String> devices;
+	private volatile Consumer<String> stageListener;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 */
+	public Metrics() {
+		start = System.nanoTime();
+		stage = "starting";
+		filesFound = new LongAdder();
+		bytesFound = new LongAdder();
+		dirs = new LongAdder();
+		dirsPruned = new LongAdder();
+		filesSkipped = new LongAdder();
+		bytesSkipped = new LongAdder();
+		filesSampled = new LongAdder();
+		bytesSampled = new LongAdder();
+		filesHashed = new LongAdder();
+		bytesHashed = new LongAdder();
+		bytesQueued = new LongAdder();
+		cacheHits = new LongAdder();
+		cacheMisses = new LongAdder();
+		errors = new LongAdder();
+		actions = new LongAdder();
+		listLatency = new Histogram();
+		sampleLatency = new Histogram();
+		hashLatency = new Histogram();
+		actionLatency = new Histogram();
+		hashQueue = () -> 0;
+		actionQueue = () -> 0;
+		devices = () -> "[]";
+		stageListener = stage -> {};
+	}
+	
+	/**
+	 * This method registers the metrics with the platform MBean server.
+	 */
+	public void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+		} catch (JMException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method sets the name of the stage the scan is in.
+	 * 
+	 * @param stage name of the stage
+	 */
+	public void setStage(String stage) {
+		this.stage = stage;
+		stageListener.accept(stage);
+	}
+	
+	/**
+	 * This method sets a listener called whenever the stage changes.
+	 * 
+	 * @param listener receiver of the name of each new stage
+	 */
+	public void setStageListener(Consumer<String> listener) {
+		stageListener = listener;
+	}
+	
+	/**
+	 * This method sets where the depth of the hash queue is read from.
+	 * 
+	 * @param depth supplier of the queue depth
+	 */
+	public void setHashQueue(LongSupplier depth) {
+		hashQueue = depth;
+	}
+	
+	/**
+	 * This method sets where the depth of the action queue is read from.
+	 * 
+	 * @param depth supplier of the queue depth
+	 */
+	public void setActionQueue(LongSupplier depth) {
+		actionQueue = depth;
+	}
+	
+	/**
+	 * This method sets where the list of devices being read, with
+	 * their limits, is read from.
+	 * 
+	 * @param devices supplier of the devices as a JSON array
+	 */
+	public void setDevices(Supplier<String> devices) {
+		this.devices = devices;
+	}
+	
+	/**
+	 * This method records a directory listed by the walk.
+	 * 
+	 * @param nanos time taken to list it
+	 */
+	public void listed(long nanos) {
+		dirs.increment();
+		listLatency.record(nanos);
+	}
+	
+	/**
+	 * This method records a directory pruned by the walk's filter.
+	 */
+	public void pruned() {
+		dirsPruned.increment();
+	}
+	
+	/**
+	 * This method records a file skipped by the walk's filter.
+	 * 
+	 * @param size size of the file in bytes
+	 */
+	public void skipped(long size) {
+		filesSkipped.increment();
+		bytesSkipped.add(size);
+	}
+	
+	/**
+	 * This method records a file found by the walk.
+	 * 
+	 * @param size size of the file in bytes
+	 */
+	public void found(long size) {
+		filesFound.increment();
+		bytesFound.add(size);
+	}
+	
+	/**
+	 * This method records a file sampled.
+	 * 
+	 * @param bytes number of bytes read from it
+	 * @param nanos time taken to sample it
+	 */
+	public void sampled(long bytes, long nanos) {
+		filesSampled.increment();
+		bytesSampled.add(bytes);
+		sampleLatency.record(nanos);
+	}
+	
+	/**
+	 * This method records a file queued to be hashed in full, so the
+	 * time left can be estimated.
+	 * 
+	 * @param size size of the file in bytes
+	 */
+	public void queued(long size) {
+		bytesQueued.add(size);
+	}
+	
+	/**
+	 * This method records a file hashed.
+	 * 
+	 * @param size size of the file in bytes
+	 * @param nanos time taken to hash it
+	 */
+	public void hashed(long size, long nanos) {
+		filesHashed.increment();
+		bytesHashed.add(size);
+		hashLatency.record(nanos);
+	}
+	
+	/**
+	 * This method records a lookup in the hash cache.
+	 * 
+	 * @param hit whether the file was found in the cache
+	 */
+	public void cacheLookup(boolean hit) {
+		if (hit)
+			cacheHits.increment();
+		else
+			cacheMisses.increment();
+	}
+	
+	/**
+	 * This method records an error.
+	 */
+	public void error() {
+		errors.increment();
+	}
+	
+	/**
+	 * This method records an action taken on a file.
+	 * 
+	 * @param nanos time taken by the action
+	 */
+	public void acted(long nanos) {
+		actions.increment();
+		actionLatency.record(nanos);
+	}
+	
+	public String getStage() {
+		return stage;
+	}
+	
+	public long getElapsedMillis() {
+		return (System.nanoTime() - start) / 1000000;
+	}
+	
+	public long getFilesFound() {
+		return filesFound.sum();
+	}
+	
+	public long getBytesFound() {
+		return bytesFound.sum();
+	}
+	
+	public long getDirectories() {
+		return dirs.sum();
+	}
+	
+	public long getDirectoriesPruned() {
+		return dirsPruned.sum();
+	}
+	
+	public long getFilesSkipped() {
+		return filesSkipped.sum();
+	}
+	
+	public long getBytesSkipped() {
+		return bytesSkipped.sum();
+	}
+	
+	public long getFilesSampled() {
+		return filesSampled.sum();
+	}
+	
+	public long getBytesSampled() {
+		return bytesSampled.sum();
+	}
+	
+	public long getBytesRead() {
+		return bytesSampled.sum() + bytesHashed.sum();
+	}
+	
+	public long getFilesHashed() {
+		return filesHashed.sum();
+	}
+	
+	public long getBytesHashed() {
+		return bytesHashed.sum();
+	}
+	
+	public long getBytesPending() {
+		return Math.max(0, bytesQueued.sum() - bytesHashed.sum());
+	}
+	
+	public double getFilesPerSecond() {
+		return getFilesFound() * 1000.0 / Math.max(1, getElapsedMillis());
+	}
+	
+	public double getMegabytesPerSecond() {
+		return getBytesHashed() / 1048576.0 * 1000.0 / Math.max(1, getElapsedMillis());
+	}
+	
+	public double getCacheHitRate() {
+		long hits = cacheHits.sum();
+		long lookups = hits + cacheMisses.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+	
+	public long getErrors() {
+		return errors.sum();
+	}
+	
+	public long getActions() {
+		return actions.sum();
+	}
+	
+	public String getDevices() {
+		return devices.get();
+	}
+	
+	public long getHashQueueDepth() {
+		return hashQueue.getAsLong();
+	}
+	
+	public long getActionQueueDepth() {
+		return actionQueue.getAsLong();
+	}
+	
+	public double getListLatencyP99Millis() {
+		return listLatency.getPercentileMillis(0.99);
+	}
+	
+	public double getSampleLatencyP99Millis() {
+		return sampleLatency.getPercentileMillis(0.99);
+	}
+	
+	public double getHashLatencyP99Millis() {
+		return hashLatency.getPercentileMillis(0.99);
+	}
+	
+	public double getActionLatencyP99Millis() {
+		return actionLatency.getPercentileMillis(0.99);
+	}
+	
+	public String getSummary() {
+		return toJson();
+	}
+	
+	/**
+	 * This method returns every metric as a JSON object.
+	 * 
+	 * @return String representation of the metrics
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{");
+		json.append("\"stage\":\"" + stage + "\"");
+		json.append(",\"elapsedMs\":" + getElapsedMillis());
+		json.append(",\"directories\":" + getDirectories());
+		json.append(",\"directoriesPruned\":" + getDirectoriesPruned());
+		json.append(",\"filesFound\":" + getFilesFound());
+		json.append(",\"bytesFound\":" + getBytesFound());
+		json.append(",\"filesSkipped\":" + getFilesSkipped());
+		json.append(",\"bytesSkipped\":" + getBytesSkipped());
+		json.append(",\"filesSampled\":" + getFilesSampled());
+		json.append(",\"bytesSampled\":" + getBytesSampled());
+		json.append(",\"filesHashed\":" + getFilesHashed());
+		json.append(",\"bytesHashed\":" + getBytesHashed());
+		json.append(",\"bytesRead\":" + getBytesRead());
+		json.append(String.format(Locale.ROOT, ",\"filesPerSecond\":%.1f", getFilesPerSecond()));
+		json.append(String.format(Locale.ROOT, ",\"megabytesPerSecond\":%.1f", getMegabytesPerSecond()));
+		json.append(",\"cacheHits\":" + cacheHits.sum());
+		json.append(",\"cacheMisses\":" + cacheMisses.sum());
+		json.append(String.format(Locale.ROOT, ",\"cacheHitRate\":%.3f", getCacheHitRate()));
+		json.append(",\"errors\":" + getErrors());
+		json.append(",\"actions\":" + getActions());
+		json.append(",\"devices\":" + getDevices());
+		json.append(",\"latency\":{\"list\":" + listLatency.toJson() + ",\"sample\":" + sampleLatency.toJson() +
+				",\"hash\":" + hashLatency.toJson() + ",\"action\":" + actionLatency.toJson() + "}");
+		json.append("}");
+		return json.toString();
+	}
+}
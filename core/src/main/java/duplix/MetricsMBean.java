@@ -0,0 +1,55 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+/**
+ * This interface exposes the metrics of a running scan through JMX,
+ * under the name duplix:type=Metrics.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public interface MetricsMBean {
+	String getStage();
+	long getElapsedMillis();
+	long getFilesFound();
+	long getBytesFound();
+	long getDirectories();
+	long getDirectoriesPruned();
+	long getFilesSkipped();
+	long getBytesSkipped();
+	long getFilesSampled();
+	long getBytesSampled();
+	long getFilesHashed();
+	long getBytesHashed();
+	long getBytesRead();
+	long getBytesPending();
+	double getFilesPerSecond();
+	double getMegabytesPerSecond();
+	double getCacheHitRate();
+	long getErrors();
+	long getActions();
+	String getDevices();
+	long getHashQueueDepth();
+	long getActionQueueDepth();
+	double getListLatencyP99Millis();
+	double getSampleLatencyP99Millis();
+	double getHashLatencyP99Millis();
+	double getActionLatencyP99Millis();
+	String getSummary();
+}
@@ -0,0 +1,96 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class stores the paths of discovered files in a file on disk
+ * rather than on the heap. Each path is referred to by the offset at
+ * which it was written, so a path id costs nothing in memory until 
+ * the path is read back.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class PathSpill {
+	private Path file;
+	private DataOutputStream out;
+	private RandomAccessFile in;
+	private long written;
+	
+	/**
+	 * Default and sole constructor creates the path file.
+	 * 
+	 * @param dir directory to create the path file in
+	 * @throws IOException if the path file cannot be created
+	 */
+	public PathSpill(Path dir) throws IOException {
+		file = Files.createTempFile(dir, "paths", ".bin");
+		out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		written = 0;
+	}
+	
+	/**
+	 * This method writes a path to the file.
+	 * 
+	 * @param path path to store
+	 * @return id of the path
+	 * @throws IOException if the path cannot be written
+	 */
+	public synchronized long add(Path path) throws IOException {
+		long offset = written;
+		int before = out.size();
+		out.writeUTF(path.toString());
+		// size() wraps past 2 GB, but the difference of one write does not
+		written += out.size() - before;
+		return offset;
+	}
+	
+	/**
+	 * This method reads a path back from the file.
+	 * 
+	 * @param id id of the path
+	 * @return String representation of the path
+	 * @throws IOException if the path cannot be read
+	 */
+	public synchronized String get(long id) throws IOException {
+		out.flush();
+		if (in == null)
+			in = new RandomAccessFile(file.toFile(), "r");
+		in.seek(id);
+		return in.readUTF();
+	}
+	
+	/**
+	 * This method closes and deletes the path file.
+	 */
+	public synchronized void close() {
+		try {
+			out.close();
+			if (in != null)
+				in.close();
+			Files.deleteIfExists(file);
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+}
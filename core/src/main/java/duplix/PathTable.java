@@ -0,0 +1,195 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class stores the paths of discovered files compactly and
+ * refers to each by an int id. Every directory is stored once, as
+ * its parent directory's id plus its own name, and every file as its
+ * directory's id plus its name, packed as UTF-8 into a shared byte
+ * array. Full paths are only rebuilt when they are asked for.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class PathTable {
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private HashMap<Path, Integer> dirIds;
+	private int[] dirParent;
+	private String[] dirName;
+	private int dirCount;
+	
+	private int[] fileDir;
+	private int[] nameStart;
+	private byte[] names;
+	private int nameEnd;
+	private int fileCount;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 */
+	public PathTable() {
+		dirIds = new HashMap<>();
+		dirParent = new int[INITIAL_CAPACITY];
+		dirName = new String[INITIAL_CAPACITY];
+		dirCount = 0;
+		fileDir = new int[INITIAL_CAPACITY];
+		nameStart = new int[INITIAL_CAPACITY + 1];
+		names = new byte[INITIAL_CAPACITY * 16];
+		nameEnd = 0;
+		fileCount = 0;
+	}
+	
+	/**
+	 * This method adds a file to the table.
+	 * 
+	 * @param file file to add
+	 * @return id of the file
+	 */
+	public synchronized int add(Path file) {
+		Path parent = file.getParent();
+		int dir = parent == null ? -1 : dirId(parent);
+		byte[] name = (parent == null ? file : file.getFileName()).toString()
+				.getBytes(StandardCharsets.UTF_8);
+		
+		if (fileCount == fileDir.length) {
+			fileDir = Arrays.copyOf(fileDir, fileCount * 2);
+			nameStart = Arrays.copyOf(nameStart, fileCount * 2 + 1);
+		}
+		if (nameEnd + name.length > names.length) {
+			long grown = Math.max((long) names.length * 2, (long) nameEnd + name.length);
+			if (grown > Integer.MAX_VALUE - 8)
+				throw new IllegalStateException("Path table is full");
+			names = Arrays.copyOf(names, (int) grown);
+		}
+		System.arraycopy(name, 0, names, nameEnd, name.length);
+		fileDir[fileCount] = dir;
+		nameStart[fileCount] = nameEnd;
+		nameEnd += name.length;
+		nameStart[fileCount + 1] = nameEnd;
+		return fileCount++;
+	}
+	
+	/**
+	 * This method returns the String representation of a file path.
+	 * 
+	 * @param id id of the file
+	 * @return String representation of the file path
+	 */
+	public synchronized String get(int id) {
+		String name = new String(names, nameStart[id], nameStart[id + 1] - nameStart[id], 
+				StandardCharsets.UTF_8);
+		if (fileDir[id] < 0)
+			return name;
+		return join(dirString(fileDir[id]), name);
+	}
+	
+	/**
+	 * This method returns the path of a file.
+	 * 
+	 * @param id id of the file
+	 * @return path of the file
+	 */
+	public Path getPath(int id) {
+		return Paths.get(get(id));
+	}
+	
+	/**
+	 * This method returns the number of files in the table.
+	 * 
+	 * @return number of files
+	 */
+	public synchronized int size() {
+		return fileCount;
+	}
+	
+	/**
+	 * This method returns an estimate of the heap used by the table,
+	 * not counting the directory lookup map.
+	 * 
+	 * @return estimated size in bytes
+	 */
+	public synchronized long bytesUsed() {
+		long bytes = 4L * (fileDir.length + nameStart.length + dirParent.length) 
+				+ names.length + 4L * dirName.length;
+		for (int i = 0; i < dirCount; i++)
+			bytes += 40 + dirName[i].length();
+		return bytes;
+	}
+	
+	/**
+	 * This method returns the id of a directory, adding it and
+	 * any of its parents not yet in the table.
+	 * 
+	 * @param dir directory to look up
+	 * @return id of the directory
+	 */
+	private int dirId(Path dir) {
+		ArrayDeque<Path> missing = new ArrayDeque<>();
+		Integer parentId = null;
+		for (Path d = dir; d != null && parentId == null; d = d.getParent()) {
+			parentId = dirIds.get(d);
+			if (parentId == null)
+				missing.push(d);
+		}
+		int id = parentId == null ? -1 : parentId;
+		while (!missing.isEmpty()) {
+			Path d = missing.pop();
+			if (dirCount == dirParent.length) {
+				dirParent = Arrays.copyOf(dirParent, dirCount * 2);
+				dirName = Arrays.copyOf(dirName, dirCount * 2);
+			}
+			dirParent[dirCount] = id;
+			dirName[dirCount] = (id < 0 ? d : d.getFileName()).toString();
+			dirIds.put(d, dirCount);
+			id = dirCount++;
+		}
+		return id;
+	}
+	
+	/**
+	 * This method returns the String representation of a directory.
+	 * 
+	 * @param id id of the directory
+	 * @return String representation of the directory path
+	 */
+	private String dirString(int id) {
+		ArrayDeque<String> segments = new ArrayDeque<>();
+		for (int d = id; d >= 0; d = dirParent[d])
+			segments.push(dirName[d]);
+		String path = segments.pop();
+		while (!segments.isEmpty())
+			path = join(path, segments.pop());
+		return path;
+	}
+	
+	private static String join(String dir, String name) {
+		if (dir.endsWith(File.separator))
+			return dir + name;
+		return dir + File.separator + name;
+	}
+}
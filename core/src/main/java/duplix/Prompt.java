@@ -0,0 +1,173 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.PrintStream;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * This class provides and displays a timed progress line to users,
+ * thereby allowing them to know the program is still running and how
+ * fast. The line shows the stage of the scan, files found, hashing
+ * throughput, queue depth and an estimate of the time left, based on
+ * the bytes queued for hashing but not yet read. On a terminal it is
+ * redrawn in place every tick while the scan runs; otherwise, a line
+ * is printed every CHECK ticks. It is printed to standard error, so 
+ * it never mixes with the report.
+ * The prompt runs on a daemon timer, so it never keeps the program 
+ * alive.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ * 
+ */
+public class Prompt {
+	private final int CHECK = 15;
+	private final double SMOOTHING = 0.3;
+	private Timer timer;
+	private int time;
+	private PrintStream out;
+	private boolean live;
+	private int lineLength;
+	private long lastBytes;
+	private double rate;
+	
+	public Prompt(Calculate calc, int seconds) {
+		time = 0;
+		out = System.err;
+		live = System.console() != null;
+		lineLength = 0;
+		lastBytes = 0;
+		rate = 0;
+		calc.getMetrics().setStageListener(stage -> {
+			if (!isScanning(calc.getMetrics()))
+				clear();
+		});
+		timer = new Timer("duplix-prompt", true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			public void run() {
+				time++;
+				Metrics metrics = calc.getMetrics();
+				long bytes = metrics.getBytesHashed();
+				rate = SMOOTHING * (bytes - lastBytes) / seconds + (1 - SMOOTHING) * rate;
+				lastBytes = bytes;
+				if (calc.isFinished) {
+					clear();
+					cancel();
+				}
+				else if (live && isScanning(metrics)) {
+					draw(progress(metrics));
+				}
+				else {
+					clear();
+					if (time % CHECK == 0)
+						out.println(progress(metrics));
+				}
+			}
+		}, seconds * 1000, seconds * 1000);
+	}
+	
+	/**
+	 * This method stops the prompt.
+	 */
+	public void cancel() {
+		timer.cancel();
+		clear();
+	}
+	
+	/**
+	 * This method returns a value indicating whether the scan is in a
+	 * stage that writes nothing else to the terminal, so the progress
+	 * line can be redrawn in place.
+	 * 
+	 * @param metrics metrics of the scan
+	 * @return value indicating if the scan is walking or hashing
+	 */
+	private boolean isScanning(Metrics metrics) {
+		return metrics.getStage().equals("walk") || metrics.getStage().equals("hash");
+	}
+	
+	/**
+	 * This method builds the progress line.
+	 * 
+	 * @param metrics metrics of the scan
+	 * @return String representation of the progress
+	 */
+	private String progress(Metrics metrics) {
+		StringBuilder line = new StringBuilder();
+		line.append("[" + metrics.getStage() + "] ");
+		line.append(metrics.getFilesFound() + " files, " + megabytes(metrics.getBytesFound()) + " found | ");
+		line.append(metrics.getFilesHashed() + " hashed, " + String.format("%.1f MB/s", rate / 1048576));
+		line.append(" | queue " + metrics.getHashQueueDepth());
+		if (metrics.getActions() > 0 || metrics.getActionQueueDepth() > 0)
+			line.append(" | " + metrics.getActions() + " actions, queue " + metrics.getActionQueueDepth());
+		if (metrics.getErrors() > 0)
+			line.append(" | " + metrics.getErrors() + " errors");
+		long pending = metrics.getBytesPending();
+		if (pending > 0 && rate > 0) {
+			long eta = (long) (pending / rate);
+			line.append(String.format(" | ETA %d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60));
+		}
+		return line.toString();
+	}
+	
+	/**
+	 * This method pads a line with spaces to cover the previous one.
+	 * 
+	 * @param line line to print
+	 * @return padded line
+	 */
+	private String pad(String line) {
+		StringBuilder padded = new StringBuilder(line);
+		while (padded.length() < lineLength)
+			padded.append(' ');
+		lineLength = line.length();
+		return padded.toString();
+	}
+	
+	/**
+	 * This method redraws the progress line in place.
+	 * 
+	 * @param line progress line
+	 */
+	private synchronized void draw(String line) {
+		out.print("\r" + pad(line));
+		out.flush();
+	}
+	
+	/**
+	 * This method erases the progress line, if one is showing.
+	 */
+	private synchronized void clear() {
+		if (lineLength > 0) {
+			out.print("\r" + pad("") + "\r");
+			out.flush();
+			lineLength = 0;
+		}
+	}
+	
+	/**
+	 * This method formats a number of bytes in megabytes.
+	 * 
+	 * @param bytes number of bytes
+	 * @return String representation of the size
+	 */
+	private static String megabytes(long bytes) {
+		return String.format("%.1f MB", bytes / 1048576.0);
+	}
+}
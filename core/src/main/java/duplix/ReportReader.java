@@ -0,0 +1,163 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class loads back a report written by ReportWriter in the
+ * binary format, one group at a time, so its groups can be acted
+ * on again without rescanning. Files the report marks as deleted
+ * are left out of their group, along with their aliases. Reports of
+ * the first version, which had no aliases, are read too.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ReportReader implements Iterator<DupeGroup> {
+	private DataInputStream in;
+	private String algorithm;
+	private int version;
+	private DupeGroup pending;
+	
+	/**
+	 * Default and sole constructor opens the report and reads its
+	 * header.
+	 * 
+	 * @param file binary report file
+	 * @throws IOException if the file is not a binary report
+	 */
+	public ReportReader(Path file) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		if (in.readInt() != ReportWriter.MAGIC || (version = in.readInt()) < 1 || 
+				version > ReportWriter.VERSION) {
+			in.close();
+			throw new IOException(file + " is not a binary report");
+		}
+		algorithm = readString();
+		pending = advance();
+	}
+	
+	/**
+	 * This method returns a value indicating whether a given file
+	 * starts like a binary report.
+	 * 
+	 * @param file file to check
+	 * @return value indicating if the file is a binary report
+	 */
+	public static boolean isReport(Path file) {
+		if (!Files.isRegularFile(file))
+			return false;
+		try (InputStream stream = Files.newInputStream(file)) {
+			return new DataInputStream(stream).readInt() == ReportWriter.MAGIC;
+		} catch (IOException e) { return false; }
+	}
+	
+	/**
+	 * This method returns the name of the digest algorithm the
+	 * report was written with.
+	 * 
+	 * @return name of the algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return pending != null;
+	}
+	
+	@Override
+	public DupeGroup next() {
+		if (pending == null)
+			throw new NoSuchElementException();
+		DupeGroup group = pending;
+		pending = advance();
+		return group;
+	}
+	
+	/**
+	 * This method closes the report.
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method reads the next group that still has two or more
+	 * files, closing the report at its end.
+	 * 
+	 * @return next group, or null at the end of the report
+	 */
+	private DupeGroup advance() {
+		try {
+			while (in.readByte() == 1) {
+				byte[] digest = new byte[in.readInt()];
+				in.readFully(digest);
+				long size = in.readLong();
+				int count = in.readInt();
+				LinkedList<String> files = new LinkedList<>();
+				HashMap<String, List<String>> aliases = new HashMap<>();
+				for (int i = 0; i < count; i++) {
+					boolean deleted = in.readByte() != 0;
+					String file = readString();
+					ArrayList<String> fileAliases = new ArrayList<>();
+					int aliasCount = version > 1 ? in.readInt() : 0;
+					for (int j = 0; j < aliasCount; j++)
+						fileAliases.add(readString());
+					if (deleted)
+						continue;
+					files.add(file);
+					if (!fileAliases.isEmpty())
+						aliases.put(file, fileAliases);
+				}
+				if (files.size() > 1)
+					return new DupeGroup(digest.length == 0 ? null : digest, size, files, aliases);
+			}
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+		close();
+		return null;
+	}
+	
+	/**
+	 * This method reads a length-prefixed UTF-8 String.
+	 * 
+	 * @return String read
+	 * @throws IOException if the report cannot be read
+	 */
+	private String readString() throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
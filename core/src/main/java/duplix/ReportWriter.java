@@ -0,0 +1,405 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This class writes the report of duplicate files as it is produced.
+ * Each group is encoded into one fixed buffer and written through a
+ * channel to standard output and, in save mode, to the export file,
+ * so memory use does not grow with the size of the report.
+ * <p>
+ * Besides the plain text report, groups can be written as JSON Lines
+ * (one object per group), CSV (one row per file) or a length-prefixed
+ * binary format that ReportReader loads back. Every format carries 
+ * the digest, size and reclaimable bytes of each group, and lists the
+ * hard links to each file as aliases of that file.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ReportWriter {
+	public static final String TEXT = "text";
+	public static final String JSONL = "jsonl";
+	public static final String CSV = "csv";
+	public static final String BIN = "bin";
+	public static final int MAGIC = 0x44505852;
+	public static final int VERSION = 2;
+	public static final int BUFFER_SIZE = 64 * 1024;
+	
+	private String format;
+	private WritableByteChannel console;
+	private FileChannel file;
+	private String fileName;
+	private ByteBuffer buffer;
+	private CharsetEncoder encoder;
+	private int groupCount;
+	private boolean failed;
+	
+	/**
+	 * Default and sole constructor opens the console channel and
+	 * writes the header of the format, if it has one. The export 
+	 * file, if any, is not created until something is written.
+	 * 
+	 * @param fileName String representation of export file, or null
+	 * @param format name of the output format
+	 * @param algorithm name of the digest algorithm of the groups
+	 */
+	public ReportWriter(String fileName, String format, String algorithm) {
+		this.fileName = fileName;
+		this.format = format;
+		console = new FileOutputStream(FileDescriptor.out).getChannel();
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		groupCount = 0;
+		failed = false;
+		
+		if (format.equals(CSV)) {
+			write("group,digest,size,reclaimable,deleted,path,alias_of\r\n");
+		}
+		else if (format.equals(BIN)) {
+			putInt(MAGIC);
+			putInt(VERSION);
+			putString(algorithm);
+		}
+	}
+	
+	/**
+	 * This method returns a value indicating whether a given name
+	 * is that of a supported output format.
+	 * 
+	 * @param format name of the output format
+	 * @return value indicating if the format is supported
+	 */
+	public static boolean isFormat(String format) {
+		return format.equals(TEXT) || format.equals(JSONL) || 
+				format.equals(CSV) || format.equals(BIN);
+	}
+	
+	/**
+	 * This method returns a value indicating whether the report is
+	 * plain text, which is the only format messages belong in.
+	 * 
+	 * @return value indicating if the format is text
+	 */
+	public boolean isText() {
+		return format.equals(TEXT);
+	}
+	
+	/**
+	 * This method writes a group of duplicate files. When marked, every
+	 * file but those the group keeps is flagged as deleted.
+	 * 
+	 * @param group group of duplicate files
+	 * @param marked whether to mark deleted files
+	 */
+	public void writeGroup(DupeGroup group, boolean marked) {
+		List<String> files = group.getFiles();
+		groupCount++;
+		switch (format) {
+			case JSONL:
+				write("{");
+				writeJson(group, marked);
+				break;
+			case CSV:
+				for (int i = 0; i < files.size(); i++) {
+					String row = groupCount + "," + group.getHexDigest() + "," + group.getSize() + "," + 
+							group.getReclaimable() + "," + (marked && i < files.size() - group.getKept()) + ",";
+					write(row + csvEscape(files.get(i)) + ",\r\n");
+					for (String alias : group.getAliases(files.get(i)))
+						write(row + csvEscape(alias) + "," + csvEscape(files.get(i)) + "\r\n");
+				}
+				break;
+			case BIN:
+				byte[] digest = group.getDigest() == null ? new byte[0] : group.getDigest();
+				ensure(1 + 4 + digest.length + 8 + 4);
+				buffer.put((byte) 1);
+				buffer.putInt(digest.length);
+				buffer.put(digest);
+				buffer.putLong(group.getSize());
+				buffer.putInt(files.size());
+				for (int i = 0; i < files.size(); i++) {
+					ensure(1);
+					buffer.put((byte) (marked && i < files.size() - group.getKept() ? 1 : 0));
+					putString(files.get(i));
+					List<String> aliases = group.getAliases(files.get(i));
+					putInt(aliases.size());
+					for (String alias : aliases)
+						putString(alias);
+				}
+				break;
+			default:
+				int count = 1;
+				for (int i = 0; i < files.size(); i++) {
+					write(count++ + ".\t");
+					if (marked && i < files.size() - group.getKept())
+						write("*");
+					write(files.get(i) + System.lineSeparator());
+					for (String alias : group.getAliases(files.get(i)))
+						write("\t= " + alias + System.lineSeparator());
+				}
+				write("===========" + System.lineSeparator());
+				break;
+		}
+	}
+	
+	/**
+	 * This method writes a pair of files that share chunks. Only the
+	 * text and JSON Lines formats have room for pairs.
+	 * 
+	 * @param first path of the first file
+	 * @param firstSize size of the first file in bytes
+	 * @param second path of the second file
+	 * @param secondSize size of the second file in bytes
+	 * @param shared bytes of the chunks both files hold
+	 */
+	public void writePair(String first, long firstSize, String second, long secondSize, long shared) {
+		groupCount++;
+		if (format.equals(JSONL)) {
+			write("{\"shared\":" + shared + ",\"files\":[\"" + jsonEscape(first) + "\",\"" + 
+					jsonEscape(second) + "\"],\"sizes\":[" + firstSize + "," + secondSize + "]}\n");
+			return;
+		}
+		long smaller = Math.max(1, Math.min(firstSize, secondSize));
+		write("1.\t" + first + " (" + firstSize + " bytes)" + System.lineSeparator());
+		write("2.\t" + second + " (" + secondSize + " bytes)" + System.lineSeparator());
+		write("\t" + shared + " bytes shared, " + shared * 100 / smaller + 
+				"% of the smaller file" + System.lineSeparator());
+		write("===========" + System.lineSeparator());
+	}
+	
+	/**
+	 * This method writes a group of duplicate files that formed,
+	 * changed or dissolved while being watched. Only the text and
+	 * JSON Lines formats have room for events.
+	 * 
+	 * @param event name of the event
+	 * @param group group of duplicate files
+	 */
+	public void writeEvent(String event, DupeGroup group) {
+		if (format.equals(JSONL)) {
+			write("{\"event\":\"" + event + "\",");
+			writeJson(group, false);
+		}
+		else {
+			write("Duplicate group " + event + ":" + System.lineSeparator());
+			writeGroup(group, false);
+		}
+	}
+	
+	/**
+	 * This method writes the fields of a group as the rest of a JSON
+	 * object, and ends the line.
+	 * 
+	 * @param group group of duplicate files
+	 * @param marked whether to count deleted files
+	 */
+	private void writeJson(DupeGroup group, boolean marked) {
+		List<String> files = group.getFiles();
+		write("\"digest\":\"" + group.getHexDigest() + "\",\"size\":" + group.getSize() +
+				",\"reclaimable\":" + group.getReclaimable() + ",\"files\":[");
+		for (int i = 0; i < files.size(); i++) {
+			write(i == 0 ? "\"" : ",\"");
+			write(jsonEscape(files.get(i)));
+			write("\"");
+		}
+		write("]");
+		if (group.hasAliases()) {
+			write(",\"aliases\":{");
+			boolean first = true;
+			for (String file : files) {
+				List<String> aliases = group.getAliases(file);
+				if (aliases.isEmpty())
+					continue;
+				write((first ? "\"" : ",\"") + jsonEscape(file) + "\":[");
+				for (int i = 0; i < aliases.size(); i++)
+					write((i == 0 ? "\"" : ",\"") + jsonEscape(aliases.get(i)) + "\"");
+				write("]");
+				first = false;
+			}
+			write("}");
+		}
+		if (group.isDirectory())
+			write(",\"directory\":true");
+		if (group.getReferences() > 0)
+			write(",\"references\":" + group.getReferences());
+		if (marked)
+			write(",\"deleted\":" + (files.size() - group.getKept()));
+		write("}\n");
+	}
+	
+	/**
+	 * This method writes a message to the report.
+	 * 
+	 * @param msg message to write
+	 */
+	public void write(String msg) {
+		CharBuffer chars = CharBuffer.wrap(msg);
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (!result.isOverflow())
+				break;
+			drain();
+		}
+		encoder.reset();
+	}
+	
+	/**
+	 * This method writes out everything buffered so far, so that a
+	 * finished batch of groups is visible before the scan ends.
+	 */
+	public void flush() {
+		drain();
+	}
+	
+	/**
+	 * This method flushes and closes the report.
+	 * 
+	 * @return value indicating if the export file was written, if any
+	 */
+	public boolean close() {
+		if (format.equals(BIN)) {
+			ensure(1);
+			buffer.put((byte) 0);
+		}
+		drain();
+		try {
+			if (file != null) {
+				file.force(false);
+				file.close();
+			}
+		} catch (IOException e) { failed = true; }
+		return !failed;
+	}
+	
+	/**
+	 * This method writes an int to the report.
+	 * 
+	 * @param value value to write
+	 */
+	private void putInt(int value) {
+		ensure(4);
+		buffer.putInt(value);
+	}
+	
+	/**
+	 * This method writes a String to the report as its UTF-8 length
+	 * followed by its UTF-8 bytes.
+	 * 
+	 * @param value value to write
+	 */
+	private void putString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		putInt(bytes.length);
+		for (int offset = 0; offset < bytes.length; ) {
+			ensure(1);
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+	
+	/**
+	 * This method makes room in the buffer for a given number of bytes.
+	 * 
+	 * @param bytes number of bytes needed
+	 */
+	private void ensure(int bytes) {
+		if (buffer.remaining() < bytes)
+			drain();
+	}
+	
+	/**
+	 * This method writes the buffer to each channel and empties it.
+	 */
+	private void drain() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining())
+				console.write(buffer);
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+		if (fileName != null && !failed) {
+			buffer.rewind();
+			try {
+				if (file == null)
+					file = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, 
+							StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				while (buffer.hasRemaining())
+					file.write(buffer);
+			} catch (IOException e) { failed = true; }
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * This method escapes a String for use inside a JSON string.
+	 * 
+	 * @param value value to escape
+	 * @return escaped value
+	 */
+	private static String jsonEscape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': escaped.append("\\\""); break;
+				case '\\': escaped.append("\\\\"); break;
+				case '\n': escaped.append("\\n"); break;
+				case '\r': escaped.append("\\r"); break;
+				case '\t': escaped.append("\\t"); break;
+				default:
+					if (c < 0x20)
+						escaped.append(String.format("\\u%04x", (int) c));
+					else
+						escaped.append(c);
+					break;
+			}
+		}
+		return escaped.toString();
+	}
+	
+	/**
+	 * This method quotes a CSV field if it holds a comma, quote
+	 * or line break.
+	 * 
+	 * @param value value to escape
+	 * @return escaped value
+	 */
+	private static String csvEscape(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && 
+				value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+			return value;
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+}
@@ -0,0 +1,115 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class calculates a cheap checksum over a few small samples
+ * of a file (head, tail and evenly spaced offsets in between). Files
+ * of equal size whose samples differ cannot be duplicates, so they
+ * never need to be read in full.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Sampler {
+	public static final int SAMPLE_POINTS = 5;
+	public static final int DEFAULT_SAMPLE_SIZE = 4096;
+	
+	private int sampleSize;
+	private ByteBuffer buffer;
+	private CRC32 crc;
+	private Metrics metrics;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param sampleSize number of bytes read at each sample point
+	 */
+	public Sampler(int sampleSize) {
+		this.sampleSize = sampleSize;
+		buffer = ByteBuffer.allocate(sampleSize);
+		crc = new CRC32();
+	}
+	
+	/**
+	 * This method returns a value indicating whether sampling a file 
+	 * of the given size reads less than the whole file.
+	 * 
+	 * @param size size of the file in bytes
+	 * @return boolean value indicating if the file is worth sampling
+	 */
+	public boolean worthSampling(long size) {
+		return size > (long) sampleSize * SAMPLE_POINTS;
+	}
+	
+	/**
+	 * This method returns the number of bytes read when sampling
+	 * a file of the given size.
+	 * 
+	 * @param size size of the file in bytes
+	 * @return number of bytes read by a call to sample
+	 */
+	public long bytesRead(long size) {
+		return Math.min(size, (long) sampleSize * SAMPLE_POINTS);
+	}
+	
+	/**
+	 * This method sets the metrics each file sampled is recorded in.
+	 * 
+	 * @param metrics metrics of the scan, or null
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * This method calculates the checksum of the samples of a file.
+	 * 
+	 * @param file file to sample
+	 * @param size size of the file in bytes
+	 * @return checksum of the samples
+	 * @throws IOException if the file cannot be read
+	 */
+	public long sample(Path file, long size) throws IOException {
+		long start = System.nanoTime();
+		crc.reset();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long last = Math.max(0, size - sampleSize);
+			for (int i = 0; i < SAMPLE_POINTS; i++) {
+				long offset = last * i / (SAMPLE_POINTS - 1);
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, offset + buffer.position()) < 0)
+						break;
+				}
+				buffer.flip();
+				crc.update(buffer.array(), 0, buffer.limit());
+			}
+		}
+		if (metrics != null)
+			metrics.sampled(bytesRead(size), System.nanoTime() - start);
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,333 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class scans one shard of a sharded scan, in a process of its
+ * own. It is started by a Coordinator and talks to it only through
+ * its standard input and output, in three rounds:
+ * <ol>
+ * <li>It reads the directories and files of its shard, walks them,
+ * and sends the number of files of each size.</li>
+ * <li>It reads back the sizes shared by two or more files across all
+ * shards, samples its files of those sizes, and sends the number of
+ * files of each (size, sample).</li>
+ * <li>It reads back the (size, sample) pairs shared across all shards,
+ * hashes its files of those pairs, and sends a (size, digest, file
+ * key, paths) record for each, followed by its counters.</li>
+ * </ol>
+ * Hard links within the shard are read once, and sent as the extra
+ * paths of a single record.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ShardWorker {
+	public static final int BUFFER_SIZE = 64 * 1024;
+	
+	private ArgsParser p;
+	private DataInputStream in;
+	private DataOutputStream out;
+	private Metrics metrics;
+	private ConcurrentHashMap<Long, ArrayList<Entry>> bySize;
+	private ConcurrentHashMap<Object, Entry> byKey;
+	private Walker walker;
+	
+	/**
+	 * Default and sole constructor initializes variables and takes
+	 * over standard output for the coordinator.
+	 * 
+	 * @param parser instance of ArgsParser
+	 */
+	public ShardWorker(ArgsParser parser) {
+		p = parser;
+		in = new DataInputStream(new BufferedInputStream(System.in, BUFFER_SIZE));
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), BUFFER_SIZE));
+		// nothing else may write to the coordinator's pipe
+		System.setOut(System.err);
+		metrics = new Metrics();
+		bySize = new ConcurrentHashMap<>();
+		byKey = new ConcurrentHashMap<>();
+		walker = new Walker(p.getThreads(), p.recursiveMode(), this::addFile, metrics);
+		walker.setFilter(p.getFilter());
+	}
+	
+	/**
+	 * This method scans the shard, round by round, and exits once
+	 * every record has been sent.
+	 */
+	public void run() {
+		HashEngine engine = null;
+		try {
+			engine = new HashEngine(p.getThreads(), p.getAlgorithm(), p.getSampleSize(), metrics);
+			walk();
+			sendSizes();
+			keepSizes();
+			sample(engine);
+			sendSamples();
+			keepSamples();
+			hash(engine);
+			sendRecords();
+			out.flush();
+		} catch (IOException | NoSuchAlgorithmException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(1);
+		} finally {
+			if (engine != null)
+				engine.shutdown();
+		}
+	}
+	
+	/**
+	 * This method reads the directories and files of the shard and 
+	 * walks them. Files were filtered by the coordinator already.
+	 * 
+	 * @throws IOException if the shard cannot be read
+	 */
+	private void walk() throws IOException {
+		ArrayList<Path> dirs = new ArrayList<>();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			boolean dir = in.readBoolean();
+			Path path = IO.getFile(in.readUTF());
+			if (dir) {
+				dirs.add(path);
+				continue;
+			}
+			try {
+				addFile(path, Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+			} catch (IOException e) {
+				metrics.error();
+				System.err.println("Error reading " + path + ": " + e.getMessage());
+			}
+		}
+		walker.walk(dirs);
+		byKey = null;
+	}
+	
+	/**
+	 * This method adds a file to the index by size, or to the links
+	 * of a file already indexed. Called from several threads.
+	 * 
+	 * @param file file discovered during the walk
+	 * @param attrs attributes of the file
+	 */
+	private void addFile(Path file, BasicFileAttributes attrs) {
+		metrics.found(attrs.size());
+		Object key = attrs.fileKey();
+		Entry entry = new Entry(file, key);
+		if (key != null) {
+			Entry first = byKey.putIfAbsent(key, entry);
+			if (first != null) {
+				synchronized (first) {
+					first.links.add(file);
+				}
+				return;
+			}
+		}
+		bySize.compute(attrs.size(), (size, list) -> {
+			if (list == null)
+				list = new ArrayList<>();
+			list.add(entry);
+			return list;
+		});
+	}
+	
+	/**
+	 * This method sends the number of files of each size.
+	 * 
+	 * @throws IOException if the coordinator cannot be written to
+	 */
+	private void sendSizes() throws IOException {
+		out.writeInt(bySize.size());
+		for (Map.Entry<Long, ArrayList<Entry>> size : bySize.entrySet()) {
+			out.writeLong(size.getKey());
+			out.writeInt(size.getValue().size());
+		}
+		out.flush();
+	}
+	
+	/**
+	 * This method reads the sizes shared across shards and drops
+	 * every other size.
+	 * 
+	 * @throws IOException if the coordinator cannot be read
+	 */
+	private void keepSizes() throws IOException {
+		HashSet<Long> keep = new HashSet<>();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+			keep.add(in.readLong());
+		bySize.keySet().retainAll(keep);
+	}
+	
+	/**
+	 * This method samples every file left, on the hash engine's
+	 * workers. Files too small to sample keep a sample of 0.
+	 * 
+	 * @param engine hash engine to sample on
+	 */
+	private void sample(HashEngine engine) {
+		Sampler sizer = new Sampler(p.getSampleSize());
+		for (Map.Entry<Long, ArrayList<Entry>> group : bySize.entrySet()) {
+			long size = group.getKey();
+			boolean sampling = p.sampleMode() && sizer.worthSampling(size);
+			for (Entry entry : group.getValue()) {
+				if (!sampling) {
+					entry.ok = true;
+					continue;
+				}
+				engine.submit(entry.file, sizer.bytesRead(size), (hasher, sampler) -> {
+					entry.sample = sampler.sample(entry.file, size);
+					entry.ok = true;
+				});
+			}
+		}
+		engine.await();
+	}
+	
+	/**
+	 * This method sends the number of files of each (size, sample).
+	 * Files that could not be sampled are left out.
+	 * 
+	 * @throws IOException if the coordinator cannot be written to
+	 */
+	private void sendSamples() throws IOException {
+		ArrayList<long[]> counts = new ArrayList<>();
+		for (Map.Entry<Long, ArrayList<Entry>> group : bySize.entrySet()) {
+			HashMap<Long, Integer> bySample = new HashMap<>();
+			for (Entry entry : group.getValue()) {
+				if (entry.ok)
+					bySample.merge(entry.sample, 1, Integer::sum);
+			}
+			for (Map.Entry<Long, Integer> sample : bySample.entrySet())
+				counts.add(new long[] { group.getKey(), sample.getKey(), sample.getValue() });
+		}
+		out.writeInt(counts.size());
+		for (long[] count : counts) {
+			out.writeLong(count[0]);
+			out.writeLong(count[1]);
+			out.writeInt((int) count[2]);
+		}
+		out.flush();
+	}
+	
+	/**
+	 * This method reads the (size, sample) pairs shared across shards
+	 * and drops every other file.
+	 * 
+	 * @throws IOException if the coordinator cannot be read
+	 */
+	private void keepSamples() throws IOException {
+		HashMap<Long, HashSet<Long>> keep = new HashMap<>();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			long size = in.readLong();
+			keep.computeIfAbsent(size, k -> new HashSet<>()).add(in.readLong());
+		}
+		for (Map.Entry<Long, ArrayList<Entry>> group : bySize.entrySet()) {
+			HashSet<Long> samples = keep.getOrDefault(group.getKey(), new HashSet<>());
+			group.getValue().removeIf(entry -> !entry.ok || !samples.contains(entry.sample));
+		}
+	}
+	
+	/**
+	 * This method hashes every file left, on the hash engine's workers.
+	 * 
+	 * @param engine hash engine to hash on
+	 */
+	private void hash(HashEngine engine) {
+		for (Map.Entry<Long, ArrayList<Entry>> group : bySize.entrySet()) {
+			long size = group.getKey();
+			for (Entry entry : group.getValue()) {
+				metrics.queued(size);
+				engine.submit(entry.file, size, (hasher, sampler) -> entry.digest = hasher.hash(entry.file, size));
+			}
+		}
+		engine.await();
+	}
+	
+	/**
+	 * This method sends a record for every file hashed, then the
+	 * counters of the shard.
+	 * 
+	 * @throws IOException if the coordinator cannot be written to
+	 */
+	private void sendRecords() throws IOException {
+		for (Map.Entry<Long, ArrayList<Entry>> group : bySize.entrySet()) {
+			for (Entry entry : group.getValue()) {
+				if (entry.digest == null)
+					continue;
+				out.writeLong(group.getKey());
+				out.writeInt(entry.digest.length);
+				out.write(entry.digest);
+				out.writeUTF(entry.key == null ? "" : entry.key.toString());
+				out.writeInt(1 + entry.links.size());
+				out.writeUTF(entry.file.toString());
+				for (Path link : entry.links)
+					out.writeUTF(link.toString());
+			}
+		}
+		out.writeLong(Coordinator.END);
+		
+		out.writeLong(metrics.getDirectories());
+		out.writeLong(metrics.getDirectoriesPruned());
+		out.writeLong(metrics.getFilesFound());
+		out.writeLong(metrics.getFilesSkipped());
+		out.writeLong(metrics.getBytesSkipped());
+		out.writeLong(metrics.getBytesSampled());
+		out.writeLong(metrics.getBytesHashed());
+		out.writeLong(metrics.getErrors());
+	}
+	
+	/**
+	 * A physical file of the shard, with the paths of its hard links.
+	 */
+	private static class Entry {
+		Path file;
+		Object key;
+		ArrayList<Path> links;
+		long sample;
+		volatile boolean ok;
+		volatile byte[] digest;
+		
+		Entry(Path file, Object key) {
+			this.file = file;
+			this.key = key;
+			links = new ArrayList<>(0);
+		}
+	}
+}
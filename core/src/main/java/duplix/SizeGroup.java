@@ -0,0 +1,286 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+/**
+ * This class holds the files discovered with one particular size, as
+ * ids into a PathTable, along with the sample checksum of each once it
+ * has been calculated, and the digest of any file found in the hash
+ * cache.
+ * Hard links to a file already in the group are not added as files
+ * of their own, but kept as aliases of that file, so each physical
+ * file is sampled and hashed only once.
+ * Files under a reference root are flagged, so a group holding
+ * only reference files need never be read.
+ * Files may be added and sampled from several threads at once.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class SizeGroup {
+	private PathTable paths;
+	private long size;
+	private boolean sampling;
+	private int[] files;
+	private int count;
+	private ArrayList<BasicFileAttributes> attrs;
+	private long[] samples;
+	private boolean[] sampled;
+	private ArrayList<byte[]> digests;
+	private int cached;
+	private Object firstKey;
+	private HashMap<Object, Integer> keys;
+	private ArrayList<int[]> aliases;
+	private BitSet references;
+	private int firstLive;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param paths table to store file paths in
+	 * @param size size in bytes of every file in the group
+	 * @param sampling whether files in the group are sampled
+	 */
+	public SizeGroup(PathTable paths, long size, boolean sampling) {
+		this.paths = paths;
+		this.size = size;
+		this.sampling = sampling;
+		files = new int[1];
+		count = 0;
+		cached = 0;
+		firstLive = -1;
+	}
+	
+	/**
+	 * This method adds a file to the group, or, if it is a hard link
+	 * to a file already in the group, adds it as an alias of that file.
+	 * 
+	 * @param file file discovered during the scan
+	 * @param fileKey key identifying the physical file, or null
+	 * @param fileAttrs attributes of the file, kept only if not null
+	 * @param digest digest of the file from the hash cache, or null
+	 * @param reference whether the file is under a reference root
+	 * @return index of the file within the group, or -1 for an alias
+	 */
+	public synchronized int add(Path file, Object fileKey, BasicFileAttributes fileAttrs, byte[] digest,
+			boolean reference) {
+		if (fileKey != null && count == 0) {
+			firstKey = fileKey;
+		}
+		else if (fileKey != null) {
+			// most groups hold a single file, so the map is made for the second
+			if (keys == null) {
+				keys = new HashMap<>();
+				if (firstKey != null)
+					keys.put(firstKey, 0);
+			}
+			Integer primary = keys.get(fileKey);
+			if (primary != null) {
+				if (aliases == null)
+					aliases = new ArrayList<>();
+				aliases.add(new int[] { primary, paths.add(file) });
+				return -1;
+			}
+			keys.put(fileKey, count);
+		}
+		if (count == files.length)
+			files = Arrays.copyOf(files, count * 2);
+		files[count] = paths.add(file);
+		if (fileAttrs != null) {
+			if (attrs == null)
+				attrs = new ArrayList<>();
+			while (attrs.size() < count)
+				attrs.add(null);
+			attrs.add(fileAttrs);
+		}
+		if (digest != null) {
+			if (digests == null)
+				digests = new ArrayList<>();
+			while (digests.size() < count)
+				digests.add(null);
+			digests.add(digest);
+			cached++;
+		}
+		if (reference) {
+			if (references == null)
+				references = new BitSet();
+			references.set(count);
+		}
+		else if (firstLive < 0) {
+			firstLive = count;
+		}
+		return count++;
+	}
+	
+	/**
+	 * This method returns the aliases added to the group, each as the
+	 * index of the file it links to and the path table id of the alias.
+	 * 
+	 * @return list of (index, alias id) pairs
+	 */
+	public synchronized ArrayList<int[]> getAliases() {
+		return aliases != null ? aliases : new ArrayList<>();
+	}
+	
+	/**
+	 * This method returns the size of every file in the group.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	/**
+	 * This method returns a value indicating whether files
+	 * in the group are sampled before being hashed.
+	 * 
+	 * @return boolean value indicating if the group is sampled
+	 */
+	public boolean isSampled() {
+		return sampling;
+	}
+	
+	/**
+	 * This method returns the index of the first file added that is
+	 * not under a reference root.
+	 * 
+	 * @return index of the first such file, or -1 if there is none
+	 */
+	public synchronized int getFirstLive() {
+		return firstLive;
+	}
+	
+	/**
+	 * This method returns a value indicating whether the file at a
+	 * given index is under a reference root.
+	 * 
+	 * @param i index of the file
+	 * @return boolean value indicating if the file is a reference file
+	 */
+	public synchronized boolean isReference(int i) {
+		return references != null && references.get(i);
+	}
+	
+	/**
+	 * This method returns the number of files in the group.
+	 * 
+	 * @return number of files
+	 */
+	public synchronized int count() {
+		return count;
+	}
+	
+	/**
+	 * This method returns a file in the group.
+	 * 
+	 * @param i index of the file within the group
+	 * @return file at the given index
+	 */
+	public synchronized Path getFile(int i) {
+		return paths.getPath(files[i]);
+	}
+	
+	/**
+	 * This method returns the path table id of a file in the group.
+	 * 
+	 * @param i index of the file within the group
+	 * @return id of the file at the given index
+	 */
+	public synchronized int getFileId(int i) {
+		return files[i];
+	}
+	
+	/**
+	 * This method returns the attributes of a file in the group.
+	 * 
+	 * @param i index of the file within the group
+	 * @return attributes of the file at the given index
+	 */
+	public synchronized BasicFileAttributes getAttrs(int i) {
+		return attrs != null && i < attrs.size() ? attrs.get(i) : null;
+	}
+	
+	/**
+	 * This method returns the cached digest of a file in the group.
+	 * 
+	 * @param i index of the file within the group
+	 * @return digest of the file, or null if it was not cached
+	 */
+	public synchronized byte[] getDigest(int i) {
+		return digests != null && i < digests.size() ? digests.get(i) : null;
+	}
+	
+	/**
+	 * This method returns a value indicating whether any file
+	 * in the group was found in the hash cache.
+	 * 
+	 * @return boolean value indicating if any digest is cached
+	 */
+	public synchronized boolean hasCached() {
+		return cached > 0;
+	}
+	
+	/**
+	 * This method records the sample checksum of a file.
+	 * 
+	 * @param i index of the file within the group
+	 * @param sample sample checksum of the file
+	 */
+	public synchronized void setSample(int i, long sample) {
+		if (samples == null || samples.length < count) {
+			samples = samples == null ? new long[count] : Arrays.copyOf(samples, count);
+			sampled = sampled == null ? new boolean[count] : Arrays.copyOf(sampled, count);
+		}
+		samples[i] = sample;
+		sampled[i] = true;
+	}
+	
+	/**
+	 * This method splits the files of the group that still need
+	 * hashing into sub-groups of files with matching sample checksums.
+	 * Files with a cached digest, and files that could not be sampled,
+	 * are left out. If the group is not sampled, or some of its files
+	 * are cached (so any file may match a cached one), the files are
+	 * returned as a single sub-group.
+	 * 
+	 * @return sub-groups of indices of files within the group
+	 */
+	public synchronized Collection<LinkedList<Integer>> groupBySample() {
+		TreeMap<Long, LinkedList<Integer>> sampleMap = new TreeMap<>();
+		for (int i = 0; i < count; i++) {
+			if (getDigest(i) != null)
+				continue;
+			if (!sampling || cached > 0)
+				sampleMap.computeIfAbsent(0L, k -> new LinkedList<>()).add(i);
+			else if (sampled != null && i < sampled.length && sampled[i])
+				sampleMap.computeIfAbsent(samples[i], k -> new LinkedList<>()).add(i);
+		}
+		return sampleMap.values();
+	}
+}
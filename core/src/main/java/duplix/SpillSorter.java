@@ -0,0 +1,298 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * This class sorts fixed-width records of longs in bounded memory.
+ * Records are kept in memory until they reach the memory budget, at
+ * which point they are sorted and written to a run file on disk. The
+ * sorted records are read back by merging every run, so the heap used
+ * stays flat however many records are added. Columns are compared
+ * left to right as unsigned values.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class SpillSorter {
+	public static final int MAX_FAN_IN = 64;
+	private static final int RECORD_OVERHEAD = 20;
+	private static final int READ_BUFFER = 64 * 1024;
+	
+	private Path dir;
+	private String name;
+	private int width;
+	private long maxRecords;
+	private ArrayList<long[]> records;
+	private ArrayList<Path> runs;
+	private int runCount;
+	private Comparator<long[]> order;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param dir directory to write run files to
+	 * @param name prefix of the run file names
+	 * @param width number of longs in every record
+	 * @param memoryBudget bytes of heap records may use before spilling
+	 */
+	public SpillSorter(Path dir, String name, int width, long memoryBudget) {
+		this.dir = dir;
+		this.name = name;
+		this.width = width;
+		maxRecords = Math.max(1, memoryBudget / (RECORD_OVERHEAD + 8L * width));
+		records = new ArrayList<>();
+		runs = new ArrayList<>();
+		runCount = 0;
+		order = (a, b) -> {
+			for (int i = 0; i < a.length; i++) {
+				int c = Long.compareUnsigned(a[i], b[i]);
+				if (c != 0)
+					return c;
+			}
+			return 0;
+		};
+	}
+	
+	/**
+	 * This method adds a record, spilling the records in memory 
+	 * to a new run file if they have reached the memory budget.
+	 * 
+	 * @param record record of exactly width longs
+	 * @throws IOException if a run file cannot be written
+	 */
+	public synchronized void add(long[] record) throws IOException {
+		records.add(record);
+		if (records.size() >= maxRecords)
+			spill();
+	}
+	
+	/**
+	 * This method returns the number of runs spilled to disk so far,
+	 * not counting the runs of intermediate merge passes.
+	 * 
+	 * @return number of runs
+	 */
+	public synchronized int getRunCount() {
+		return runCount;
+	}
+	
+	/**
+	 * This method returns every record added, in sorted order. No
+	 * records may be added once this method has been called.
+	 * 
+	 * @return iterator over the sorted records
+	 * @throws IOException if the run files cannot be read
+	 */
+	public synchronized Iterator<long[]> sorted() throws IOException {
+		if (runs.isEmpty()) {
+			records.sort(order);
+			ArrayList<long[]> sorted = records;
+			records = new ArrayList<>();
+			return sorted.iterator();
+		}
+		if (!records.isEmpty())
+			spill();
+		while (runs.size() > MAX_FAN_IN) {
+			ArrayList<Path> merged = new ArrayList<>();
+			for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+				Merger merger = new Merger(runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN)));
+				Path run = Files.createTempFile(dir, name, ".run");
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(run)))) {
+					while (merger.hasNext())
+						write(out, merger.next());
+				}
+				merger.close();
+				merged.add(run);
+			}
+			for (Path run : runs)
+				Files.deleteIfExists(run);
+			runs = merged;
+		}
+		return new Merger(runs);
+	}
+	
+	/**
+	 * This method returns every record added, in sorted order, 
+	 * collected into groups of records that are equal in their
+	 * leading columns.
+	 * 
+	 * @param keyWidth number of leading columns that must be equal
+	 * @return iterator over groups of sorted records
+	 * @throws IOException if the run files cannot be read
+	 */
+	public Iterator<ArrayList<long[]>> groups(int keyWidth) throws IOException {
+		Iterator<long[]> sorted = sorted();
+		return new Iterator<ArrayList<long[]>>() {
+			private long[] pending = sorted.hasNext() ? sorted.next() : null;
+			
+			public boolean hasNext() {
+				return pending != null;
+			}
+			
+			public ArrayList<long[]> next() {
+				if (pending == null)
+					throw new NoSuchElementException();
+				ArrayList<long[]> group = new ArrayList<>();
+				group.add(pending);
+				pending = null;
+				while (sorted.hasNext()) {
+					long[] record = sorted.next();
+					if (!sameKey(group.get(0), record, keyWidth)) {
+						pending = record;
+						break;
+					}
+					group.add(record);
+				}
+				return group;
+			}
+		};
+	}
+	
+	/**
+	 * This method deletes every run file.
+	 */
+	public synchronized void close() {
+		for (Path run : runs) {
+			try {
+				Files.deleteIfExists(run);
+			} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+		}
+		runs.clear();
+		records.clear();
+	}
+	
+	/**
+	 * This method sorts the records in memory and writes them
+	 * to a new run file.
+	 * 
+	 * @throws IOException if the run file cannot be written
+	 */
+	private void spill() throws IOException {
+		records.sort(order);
+		Path run = Files.createTempFile(dir, name, ".run");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(run)))) {
+			for (long[] record : records)
+				write(out, record);
+		}
+		runs.add(run);
+		runCount++;
+		records = new ArrayList<>();
+	}
+	
+	private void write(DataOutputStream out, long[] record) throws IOException {
+		for (long value : record)
+			out.writeLong(value);
+	}
+	
+	private static boolean sameKey(long[] a, long[] b, int keyWidth) {
+		for (int i = 0; i < keyWidth; i++) {
+			if (a[i] != b[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * A k-way merge over sorted run files.
+	 */
+	private class Merger implements Iterator<long[]> {
+		private PriorityQueue<Run> queue;
+		private ArrayList<Run> open;
+		
+		Merger(List<Path> files) throws IOException {
+			queue = new PriorityQueue<>((a, b) -> order.compare(a.current, b.current));
+			open = new ArrayList<>();
+			for (Path file : files) {
+				Run run = new Run(file);
+				open.add(run);
+				if (run.advance())
+					queue.add(run);
+			}
+		}
+		
+		public boolean hasNext() {
+			if (queue.isEmpty())
+				close();
+			return !queue.isEmpty();
+		}
+		
+		public long[] next() {
+			Run run = queue.poll();
+			if (run == null)
+				throw new NoSuchElementException();
+			long[] record = run.current;
+			try {
+				if (run.advance())
+					queue.add(run);
+			} catch (IOException e) { throw new UncheckedIOException(e); }
+			return record;
+		}
+		
+		void close() {
+			for (Run run : open) {
+				try {
+					run.in.close();
+				} catch (IOException e) { }
+			}
+			open.clear();
+		}
+	}
+	
+	/**
+	 * A run file being read, along with its current record.
+	 */
+	private class Run {
+		private DataInputStream in;
+		private long[] current;
+		
+		Run(Path file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), READ_BUFFER));
+		}
+		
+		boolean advance() throws IOException {
+			long[] record = new long[width];
+			try {
+				for (int i = 0; i < width; i++)
+					record[i] = in.readLong();
+			} catch (EOFException e) {
+				current = null;
+				return false;
+			}
+			current = record;
+			return true;
+		}
+	}
+}
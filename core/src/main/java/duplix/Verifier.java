@@ -0,0 +1,196 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class compares a group of files byte for byte. The first file
+ * is read in lockstep with the others, one chunk at a time, and as
+ * soon as a chunk of another file differs from that of the first, the
+ * file is set aside and not read any further. Files set aside are then
+ * compared among themselves the same way. The others are read a slice
+ * of MAX_OPEN files at a time, so however large the group, no more
+ * files are open at once, and only two buffers are used.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Verifier {
+	public static final int CHUNK_SIZE = 64 * 1024;
+	public static final int MAX_OPEN = 64;
+	
+	/**
+	 * This method splits a group of files into sub-groups of 
+	 * files with identical contents. Sub-groups of a single file,
+	 * and files that could not be read, are left out.
+	 * 
+	 * @param files files to compare
+	 * @return sub-groups of identical files
+	 */
+	public static List<LinkedList<Path>> split(List<Path> files) {
+		return split(files, new ArrayList<>());
+	}
+	
+	/**
+	 * This method splits a group of files into sub-groups of 
+	 * files with identical contents. Sub-groups of a single file
+	 * are left out, and files that could not be opened or read are
+	 * added to a list of their own.
+	 * 
+	 * @param files files to compare
+	 * @param unreadable list the files that could not be read are
+	 * added to
+	 * @return sub-groups of identical files, in the order given
+	 */
+	public static List<LinkedList<Path>> split(List<Path> files, List<Path> unreadable) {
+		List<LinkedList<Path>> result = new ArrayList<>();
+		ByteBuffer expected = ByteBuffer.allocate(CHUNK_SIZE);
+		ByteBuffer actual = ByteBuffer.allocate(CHUNK_SIZE);
+		LinkedList<Path> pending = new LinkedList<>(files);
+		while (pending.size() > 1) {
+			Path first = pending.removeFirst();
+			LinkedList<Path> same = new LinkedList<>();
+			LinkedList<Path> rest = new LinkedList<>();
+			same.add(first);
+			while (!pending.isEmpty()) {
+				LinkedList<Path> slice = new LinkedList<>();
+				while (!pending.isEmpty() && slice.size() < MAX_OPEN - 1)
+					slice.add(pending.removeFirst());
+				if (!compare(first, slice, same, rest, unreadable, expected, actual)) {
+					// without the first file to go by, every other file is compared again
+					unreadable.add(first);
+					same.removeFirst();
+					rest.addAll(same);
+					rest.addAll(pending);
+					same.clear();
+					pending.clear();
+				}
+			}
+			if (same.size() > 1)
+				result.add(same);
+			pending = rest;
+		}
+		return result;
+	}
+	
+	/**
+	 * This method compares a slice of files with a given file. Files
+	 * that match it are added to one list, files that differ to 
+	 * another, and files that cannot be read to a third.
+	 * 
+	 * @param first file to compare with
+	 * @param slice files to compare, no more than MAX_OPEN - 1
+	 * @param same list the matching files are added to
+	 * @param rest list the differing files are added to
+	 * @param unreadable list the unreadable files are added to
+	 * @param expected buffer for the chunks of the first file
+	 * @param actual buffer for the chunks of the other files
+	 * @return value indicating if the first file could be read; if
+	 * not, every file of the slice that could be read is added to rest
+	 */
+	private static boolean compare(Path first, List<Path> slice, List<Path> same, List<Path> rest, 
+			List<Path> unreadable, ByteBuffer expected, ByteBuffer actual) {
+		LinkedList<Path> members = new LinkedList<>();
+		LinkedList<FileChannel> channels = new LinkedList<>();
+		FileChannel source = null;
+		try {
+			try {
+				source = FileChannel.open(first, StandardOpenOption.READ);
+			} catch (IOException e) {
+				System.err.println("Error: " + e.getMessage());
+				rest.addAll(slice);
+				return false;
+			}
+			for (Path file : slice) {
+				try {
+					channels.add(FileChannel.open(file, StandardOpenOption.READ));
+					members.add(file);
+				} catch (IOException e) {
+					System.err.println("Error: " + e.getMessage());
+					unreadable.add(file);
+				}
+			}
+			
+			while (!members.isEmpty()) {
+				if (!readChunk(source, expected)) {
+					rest.addAll(members);
+					return false;
+				}
+				Iterator<Path> file = members.iterator();
+				Iterator<FileChannel> channel = channels.iterator();
+				while (file.hasNext()) {
+					Path member = file.next();
+					FileChannel open = channel.next();
+					boolean read = readChunk(open, actual);
+					if (read && actual.equals(expected))
+						continue;
+					(read ? rest : unreadable).add(member);
+					file.remove();
+					channel.remove();
+					close(open);
+				}
+				// an empty chunk is the end of the first file, and so of every match
+				if (!expected.hasRemaining())
+					break;
+			}
+			same.addAll(members);
+			return true;
+		} finally {
+			close(source);
+			for (FileChannel open : channels)
+				close(open);
+		}
+	}
+	
+	/**
+	 * This method reads the next chunk of a file, filling the buffer
+	 * unless the end of the file is reached. An empty buffer after
+	 * the read means the end of the file.
+	 * 
+	 * @param channel open channel of the file
+	 * @param buffer buffer to fill, flipped for reading on return
+	 * @return value indicating if the read was successful
+	 */
+	private static boolean readChunk(FileChannel channel, ByteBuffer buffer) {
+		buffer.clear();
+		try {
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			return false;
+		}
+		buffer.flip();
+		return true;
+	}
+	
+	private static void close(FileChannel channel) {
+		try {
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) { }
+	}
+}
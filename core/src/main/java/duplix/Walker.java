@@ -0,0 +1,263 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class walks a directory tree on a work-stealing pool, one
+ * task per directory. Tasks never wait on each other, so the depth of
+ * the tree does not add to the depth of any thread's stack. The 
+ * attributes of every entry are read exactly once and handed, along
+ * with the file, straight to a Sink. Paths that cannot be read are
+ * counted and reported rather than dropped. An optional Filter is
+ * applied to those attributes, so pruned directories are never listed 
+ * and skipped files never reach the sink.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Walker {
+	private ForkJoinPool pool;
+	private boolean recursive;
+	private Sink sink;
+	private Filter filter;
+	private AtomicLong dirCounter;
+	private AtomicLong errorCounter;
+	private AtomicLong prunedCounter;
+	private AtomicLong skippedCounter;
+	private AtomicLong skippedBytes;
+	private Metrics metrics;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 * 
+	 * @param threads number of threads to walk with
+	 * @param recursive whether to descend into inner directories
+	 * @param sink receiver of every regular file discovered
+	 * @param metrics metrics to record listings and errors in, or null
+	 */
+	public Walker(int threads, boolean recursive, Sink sink, Metrics metrics) {
+		pool = new ForkJoinPool(threads);
+		this.recursive = recursive;
+		this.sink = sink;
+		dirCounter = new AtomicLong();
+		errorCounter = new AtomicLong();
+		prunedCounter = new AtomicLong();
+		skippedCounter = new AtomicLong();
+		skippedBytes = new AtomicLong();
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * This method sets the filter entries must pass. Root directories
+	 * are always listed.
+	 * 
+	 * @param filter filter to apply, or null to look at every entry
+	 */
+	public void setFilter(Filter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * This method walks a given root directory and returns
+	 * once every file below it has been handed to the sink.
+	 * 
+	 * @param root base directory to search
+	 */
+	public void walk(Path root) {
+		walk(Collections.singletonList(root));
+	}
+	
+	/**
+	 * This method walks several root directories at once and returns
+	 * once every file below each has been handed to the sink.
+	 * 
+	 * @param roots base directories to search
+	 */
+	public void walk(List<Path> roots) {
+		ArrayList<DirTask> tasks = new ArrayList<>();
+		for (Path root : roots) {
+			if (Files.isDirectory(root))
+				tasks.add(new DirTask(null, root));
+		}
+		for (DirTask task : tasks)
+			pool.execute(task);
+		for (DirTask task : tasks)
+			task.join();
+		pool.shutdown();
+	}
+	
+	/**
+	 * This method returns the number of directories listed.
+	 * 
+	 * @return number of directories
+	 */
+	public long getDirCount() {
+		return dirCounter.get();
+	}
+	
+	/**
+	 * This method returns the number of directories pruned by the filter.
+	 * 
+	 * @return number of directories
+	 */
+	public long getPrunedCount() {
+		return prunedCounter.get();
+	}
+	
+	/**
+	 * This method returns the number of files skipped by the filter.
+	 * 
+	 * @return number of files
+	 */
+	public long getSkippedCount() {
+		return skippedCounter.get();
+	}
+	
+	/**
+	 * This method returns the total size of the files skipped by the
+	 * filter.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSkippedBytes() {
+		return skippedBytes.get();
+	}
+	
+	/**
+	 * This method returns the number of paths that could not be read.
+	 * 
+	 * @return number of errors
+	 */
+	public long getErrorCount() {
+		return errorCounter.get();
+	}
+	
+	/**
+	 * This method records a path that could not be read.
+	 * 
+	 * @param path path that could not be read
+	 * @param e cause of the error
+	 */
+	private void error(Path path, Exception e) {
+		errorCounter.incrementAndGet();
+		if (metrics != null)
+			metrics.error();
+		System.err.println("Error reading " + path + ": " + e.getMessage());
+	}
+	
+	/**
+	 * A task listing a single directory. Inner directories are forked
+	 * as tasks of their own, and this task completes once they have.
+	 */
+	private class DirTask extends CountedCompleter<Void> {
+		private static final long serialVersionUID = 1L;
+		private Path dir;
+		
+		DirTask(DirTask parent, Path dir) {
+			super(parent);
+			this.dir = dir;
+		}
+		
+		@Override
+		public void compute() {
+			ArrayList<Path> subDirs = new ArrayList<>();
+			boolean complete = true;
+			long start = System.nanoTime();
+			dirCounter.incrementAndGet();
+			sink.directory(dir);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path file : stream) {
+					try {
+						BasicFileAttributes attrs = Files.readAttributes(file, 
+								BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						if (attrs.isDirectory()) {
+							if (!recursive) {
+								complete = false;
+								continue;
+							}
+							if (filter != null && !filter.acceptDir(file, attrs)) {
+								complete = false;
+								prunedCounter.incrementAndGet();
+								if (metrics != null)
+									metrics.pruned();
+							}
+							else
+								subDirs.add(file);
+						}
+						else if (attrs.isRegularFile()) {
+							if (filter != null && !filter.acceptFile(file, attrs)) {
+								complete = false;
+								skippedCounter.incrementAndGet();
+								skippedBytes.addAndGet(attrs.size());
+								if (metrics != null)
+									metrics.skipped(attrs.size());
+							}
+							else
+								sink.file(file, attrs);
+						}
+						else
+							complete = false;
+					} catch (IOException e) {
+						complete = false;
+						error(file, e);
+					}
+				}
+			} catch (IOException | DirectoryIteratorException e) {
+				complete = false;
+				error(dir, e);
+			}
+			if (!complete)
+				sink.incomplete(dir);
+			if (metrics != null)
+				metrics.listed(System.nanoTime() - start);
+			
+			addToPendingCount(subDirs.size());
+			for (Path subDir : subDirs)
+				new DirTask(this, subDir).fork();
+			tryComplete();
+		}
+	}
+	
+	/**
+	 * A receiver of the files discovered by the walk. It is called
+	 * from several threads at once. Each directory is announced
+	 * before it is listed, and once more if any of its entries was
+	 * skipped, could not be read, or is neither file nor directory.
+	 */
+	public interface Sink {
+		void file(Path file, BasicFileAttributes attrs);
+		
+		default void directory(Path dir) {}
+		
+		default void incomplete(Path dir) {}
+	}
+}
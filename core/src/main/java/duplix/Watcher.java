@@ -0,0 +1,468 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps a live index of duplicate files after the initial
+ * scan, and keeps it up to date from WatchService events. Only the 
+ * files named by an event are looked at again, and a file is hashed
+ * only once another file shares its size. Events are coalesced: the
+ * paths they name are collected until no new event has arrived for
+ * the debounce delay, and each path is then handled once, however
+ * many events named it. Groups that form, change or dissolve as a
+ * result are written to the report. Hard links to the same file are
+ * counted as one member of a group, listed with their aliases, as in
+ * the initial scan.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class Watcher {
+	public static final int DEFAULT_DEBOUNCE = 1000;
+	public static final int MAX_DEBOUNCE_ROUNDS = 10;
+	
+	private WatchService service;
+	private Map<WatchKey, Path> dirs;
+	private boolean recursive;
+	private Filter filter;
+	private int debounce;
+	private HashEngine engine;
+	private Map<String, Long> sizeOf;
+	private Map<String, Object> keyOf;
+	private Map<Long, Set<String>> bySize;
+	private HashMap<String, ByteBuffer> digestOf;
+	private HashMap<ByteBuffer, TreeSet<String>> byDigest;
+	private long events;
+	private volatile boolean closed;
+	
+	/**
+	 * Default and sole constructor opens the watch service.
+	 * 
+	 * @param recursive whether inner directories are watched
+	 * @param debounce quiet time in milliseconds before events are handled
+	 * @param engine hash engine to hash changed files on
+	 * @param filter filter changed entries must pass
+	 * @throws IOException if the watch service cannot be opened
+	 */
+	public Watcher(boolean recursive, int debounce, HashEngine engine, Filter filter) throws IOException {
+		service = FileSystems.getDefault().newWatchService();
+		dirs = new ConcurrentHashMap<>();
+		this.recursive = recursive;
+		this.filter = filter;
+		this.debounce = debounce;
+		this.engine = engine;
+		sizeOf = new ConcurrentHashMap<>();
+		keyOf = new ConcurrentHashMap<>();
+		bySize = new ConcurrentHashMap<>();
+		digestOf = new HashMap<>();
+		byDigest = new HashMap<>();
+		events = 0;
+		closed = false;
+	}
+	
+	/**
+	 * This method starts watching a directory. It is called for each
+	 * directory before it is listed, so no change is missed between
+	 * the listing and the registration. Called from several threads.
+	 * 
+	 * @param dir directory to watch
+	 */
+	public void register(Path dir) {
+		try {
+			WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			dirs.put(key, dir);
+		} catch (IOException e) { System.err.println("Error watching " + dir + ": " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method adds a file found by the initial scan to the index.
+	 * Called from several threads.
+	 * 
+	 * @param file file discovered during the scan
+	 * @param size size of the file in bytes
+	 * @param key key identifying the physical file, or null
+	 */
+	public void seed(Path file, long size, Object key) {
+		String path = file.toString();
+		sizeOf.put(path, size);
+		if (key != null)
+			keyOf.put(path, key);
+		else
+			keyOf.remove(path);
+		bySize.computeIfAbsent(size, k -> ConcurrentHashMap.newKeySet()).add(path);
+	}
+	
+	/**
+	 * This method adds a group of duplicates found by the initial 
+	 * scan to the index, along with the aliases of its files. Groups
+	 * without a digest are hashed first.
+	 * 
+	 * @param group group of duplicates
+	 */
+	public void seed(DupeGroup group) {
+		Map<String, byte[]> digests = null;
+		if (group.getDigest() == null)
+			digests = hash(group.getFiles());
+		for (String path : group.getFiles()) {
+			byte[] digest = digests == null ? group.getDigest() : digests.get(path);
+			if (digest == null)
+				continue;
+			index(path, ByteBuffer.wrap(digest));
+			for (String alias : group.getAliases(path))
+				index(alias, ByteBuffer.wrap(digest));
+		}
+	}
+	
+	/**
+	 * This method handles events until the watcher is closed. Each
+	 * round of coalesced events is followed by a flush of the report.
+	 * 
+	 * @param report report to write group events to
+	 */
+	public void watch(ReportWriter report) {
+		while (!closed) {
+			LinkedHashSet<Path> dirty = new LinkedHashSet<>();
+			try {
+				if (!poll(service.take(), dirty))
+					dirty.addAll(rescan());
+				for (int round = 0; round < MAX_DEBOUNCE_ROUNDS; round++) {
+					WatchKey key = service.poll(debounce, TimeUnit.MILLISECONDS);
+					if (key == null)
+						break;
+					if (!poll(key, dirty))
+						dirty.addAll(rescan());
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) { break; }
+			update(dirty, report);
+			report.flush();
+		}
+	}
+	
+	/**
+	 * This method returns the number of file system events handled.
+	 * 
+	 * @return number of events
+	 */
+	public long getEventCount() {
+		return events;
+	}
+	
+	/**
+	 * This method stops the watcher. A round of events already being
+	 * handled is finished first.
+	 */
+	public void close() {
+		closed = true;
+		try {
+			service.close();
+		} catch (IOException e) { System.err.println("Error: " + e.getMessage()); }
+	}
+	
+	/**
+	 * This method collects the paths named by the events of a watch
+	 * key. New directories are registered, and every file in them
+	 * is collected too.
+	 * 
+	 * @param key signalled watch key
+	 * @param dirty set to collect changed paths in
+	 * @return false if events were lost and the tree must be rescanned
+	 */
+	private boolean poll(WatchKey key, Set<Path> dirty) {
+		Path dir = dirs.get(key);
+		boolean complete = true;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			events++;
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				complete = false;
+				continue;
+			}
+			if (dir == null)
+				continue;
+			Path path = dir.resolve((Path) event.context());
+			dirty.add(path);
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && recursive && isListed(path))
+				dirty.addAll(listTree(path));
+		}
+		if (!key.reset())
+			dirs.remove(key);
+		return complete;
+	}
+	
+	/**
+	 * This method registers a new directory tree and returns the
+	 * files in it.
+	 * 
+	 * @param dir root of the new tree
+	 * @return files in the tree
+	 */
+	private ArrayList<Path> listTree(Path dir) {
+		ArrayList<Path> files = new ArrayList<>();
+		LinkedList<Path> pending = new LinkedList<>();
+		pending.add(dir);
+		while (!pending.isEmpty()) {
+			Path next = pending.removeFirst();
+			register(next);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(next)) {
+				for (Path file : stream) {
+					if (!Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS))
+						files.add(file);
+					else if (isListed(file))
+						pending.add(file);
+				}
+			} catch (IOException e) { System.err.println("Error reading " + next + ": " + e.getMessage()); }
+		}
+		return files;
+	}
+	
+	/**
+	 * This method checks whether a path is a directory the filter 
+	 * lets the watch descend into.
+	 * 
+	 * @param path path to check
+	 * @return true if the directory is to be listed and watched
+	 */
+	private boolean isListed(Path path) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(path, 
+					BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			return attrs.isDirectory() && filter.acceptDir(path, attrs);
+		} catch (IOException e) { return false; }
+	}
+	
+	/**
+	 * This method returns every file in every watched directory, and 
+	 * every file in the index, after events were lost.
+	 * 
+	 * @return paths to look at again
+	 */
+	private LinkedHashSet<Path> rescan() {
+		LinkedHashSet<Path> all = new LinkedHashSet<>();
+		for (String path : sizeOf.keySet())
+			all.add(IO.getFile(path));
+		for (Path dir : new ArrayList<>(dirs.values())) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path file : stream) {
+					if (!Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS))
+						all.add(file);
+				}
+			} catch (IOException e) { System.err.println("Error reading " + dir + ": " + e.getMessage()); }
+		}
+		return all;
+	}
+	
+	/**
+	 * This method updates the index for a set of changed paths and
+	 * writes every group whose membership changed as a result.
+	 * 
+	 * @param dirty changed paths
+	 * @param report report to write group events to
+	 */
+	private void update(Set<Path> dirty, ReportWriter report) {
+		LinkedHashMap<ByteBuffer, TreeSet<String>> before = new LinkedHashMap<>();
+		HashMap<ByteBuffer, Long> sizes = new HashMap<>();
+		LinkedHashSet<String> toHash = new LinkedHashSet<>();
+		
+		for (Path file : dirty) {
+			String path = file.toString();
+			if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS))
+				continue;
+			if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS) && !sizeOf.containsKey(path)) {
+				// a deleted directory: drop every file that was below it
+				String prefix = path + file.getFileSystem().getSeparator();
+				for (String known : new ArrayList<>(sizeOf.keySet())) {
+					if (known.startsWith(prefix))
+						remove(known, before, sizes);
+				}
+				continue;
+			}
+			remove(path, before, sizes);
+			try {
+				BasicFileAttributes attrs = Files.readAttributes(file, 
+						BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				if (!attrs.isRegularFile() || !filter.acceptFile(file, attrs))
+					continue;
+				seed(file, attrs.size(), attrs.fileKey());
+			} catch (IOException e) { continue; }
+			
+			Set<String> sameSize = bySize.get(sizeOf.get(path));
+			if (sameSize.size() < 2)
+				continue;
+			for (String other : sameSize) {
+				if (!digestOf.containsKey(other))
+					toHash.add(other);
+			}
+		}
+		
+		for (Map.Entry<String, byte[]> entry : hash(toHash).entrySet()) {
+			Long size = sizeOf.get(entry.getKey());
+			if (size == null)
+				continue;
+			ByteBuffer digest = ByteBuffer.wrap(entry.getValue());
+			snapshot(digest, before, sizes, size);
+			index(entry.getKey(), digest);
+		}
+		
+		for (Map.Entry<ByteBuffer, TreeSet<String>> entry : before.entrySet()) {
+			TreeSet<String> was = entry.getValue();
+			TreeSet<String> now = byDigest.getOrDefault(entry.getKey(), new TreeSet<>());
+			if (now.isEmpty())
+				byDigest.remove(entry.getKey());
+			byte[] digest = entry.getKey().array();
+			long size = sizes.get(entry.getKey());
+			DupeGroup wasGroup = group(digest, size, was);
+			DupeGroup nowGroup = group(digest, size, now);
+			int wasCount = wasGroup.getFiles().size();
+			int nowCount = nowGroup.getFiles().size();
+			if (wasCount < 2 && nowCount >= 2)
+				report.writeEvent("formed", nowGroup);
+			else if (wasCount >= 2 && nowCount < 2)
+				report.writeEvent("dissolved", wasGroup);
+			else if (nowCount >= 2 && !was.equals(now))
+				report.writeEvent("changed", nowGroup);
+			for (String path : was) {
+				if (!sizeOf.containsKey(path))
+					keyOf.remove(path);
+			}
+		}
+	}
+	
+	/**
+	 * This method builds a group from the paths sharing a digest.
+	 * Paths that are hard links to the same file are collapsed into
+	 * the first of them, and listed as its aliases.
+	 * 
+	 * @param digest digest of the group
+	 * @param size size of the files of the group
+	 * @param paths paths sharing the digest, in order
+	 * @return group of the physical files, which may hold fewer than two
+	 */
+	private DupeGroup group(byte[] digest, long size, TreeSet<String> paths) {
+		LinkedList<String> files = new LinkedList<>();
+		HashMap<String, List<String>> aliases = new HashMap<>();
+		HashMap<Object, String> byKey = new HashMap<>();
+		for (String path : paths) {
+			Object key = keyOf.get(path);
+			String first = key == null ? null : byKey.putIfAbsent(key, path);
+			if (first == null)
+				files.add(path);
+			else
+				aliases.computeIfAbsent(first, k -> new ArrayList<>()).add(path);
+		}
+		return new DupeGroup(digest, size, files, aliases);
+	}
+	
+	/**
+	 * This method removes a path from the index.
+	 * 
+	 * @param path path to remove
+	 * @param before membership of each touched group before the update
+	 * @param sizes size of each touched group
+	 */
+	private void remove(String path, Map<ByteBuffer, TreeSet<String>> before, Map<ByteBuffer, Long> sizes) {
+		Long size = sizeOf.remove(path);
+		if (size == null)
+			return;
+		Set<String> sameSize = bySize.get(size);
+		sameSize.remove(path);
+		if (sameSize.isEmpty())
+			bySize.remove(size);
+		ByteBuffer digest = digestOf.remove(path);
+		if (digest != null) {
+			// the key is dropped once the group the path was in has been written
+			snapshot(digest, before, sizes, size);
+			byDigest.get(digest).remove(path);
+		}
+		else
+			keyOf.remove(path);
+	}
+	
+	/**
+	 * This method records the membership of a group before it is first
+	 * touched by an update.
+	 * 
+	 * @param digest digest of the group
+	 * @param before membership of each touched group before the update
+	 * @param sizes size of each touched group
+	 * @param size size of the files of the group
+	 */
+	private void snapshot(ByteBuffer digest, Map<ByteBuffer, TreeSet<String>> before, 
+			Map<ByteBuffer, Long> sizes, long size) {
+		if (before.containsKey(digest))
+			return;
+		TreeSet<String> members = byDigest.get(digest);
+		before.put(digest, members == null ? new TreeSet<>() : new TreeSet<>(members));
+		sizes.put(digest, size);
+	}
+	
+	/**
+	 * This method adds the digest of a file to the index.
+	 * 
+	 * @param path path of the file
+	 * @param digest digest of the file
+	 */
+	private void index(String path, ByteBuffer digest) {
+		digestOf.put(path, digest);
+		byDigest.computeIfAbsent(digest, k -> new TreeSet<>()).add(path);
+	}
+	
+	/**
+	 * This method hashes a collection of files on the hash engine.
+	 * Files that cannot be read are left out of the results.
+	 * 
+	 * @param files paths of the files to hash
+	 * @return digest of each file
+	 */
+	private Map<String, byte[]> hash(Collection<String> files) {
+		Map<String, byte[]> digests = new ConcurrentHashMap<>();
+		for (String path : files) {
+			Path file = IO.getFile(path);
+			engine.submit(file, 0, (hasher, workerSampler) -> {
+				digests.put(path, hasher.hash(file, Files.size(file)));
+			});
+		}
+		engine.await();
+		return digests;
+	}
+}
@@ -0,0 +1,164 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class is a pure-Java, streaming implementation of XXH64,
+ * the 64-bit variant of the xxHash non-cryptographic hash (seed 0).
+ * It runs several times faster than SHA-256, which makes it a good
+ * fit for finding candidate duplicates once I/O is no longer the 
+ * bottleneck. The digest is the hash value in big-endian order.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class XxHash64 extends Digest {
+	public static final String ALGORITHM = "XXH64";
+	
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	private static final int STRIPE = 32;
+	
+	private long v1, v2, v3, v4;
+	private long total;
+	private ByteBuffer pending;
+	
+	/**
+	 * Default and sole constructor initializes variables.
+	 */
+	public XxHash64() {
+		pending = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+		reset();
+	}
+	
+	@Override
+	public String getAlgorithm() {
+		return ALGORITHM;
+	}
+	
+	@Override
+	public int getLength() {
+		return 8;
+	}
+	
+	@Override
+	public boolean isCryptographic() {
+		return false;
+	}
+	
+	@Override
+	public void reset() {
+		v1 = PRIME1 + PRIME2;
+		v2 = PRIME2;
+		v3 = 0;
+		v4 = -PRIME1;
+		total = 0;
+		pending.clear();
+	}
+	
+	@Override
+	public void update(ByteBuffer buffer) {
+		ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		total += in.remaining();
+		
+		if (pending.position() > 0) {
+			while (pending.hasRemaining() && in.hasRemaining())
+				pending.put(in.get());
+			if (pending.hasRemaining()) {
+				buffer.position(in.position());
+				return;
+			}
+			pending.flip();
+			stripe(pending);
+			pending.clear();
+		}
+		while (in.remaining() >= STRIPE)
+			stripe(in);
+		pending.put(in);
+		buffer.position(in.position());
+	}
+	
+	@Override
+	public byte[] digest() {
+		long h;
+		if (total >= STRIPE) {
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) 
+					+ Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = merge(h, v1);
+			h = merge(h, v2);
+			h = merge(h, v3);
+			h = merge(h, v4);
+		}
+		else {
+			h = PRIME5;
+		}
+		h += total;
+		
+		pending.flip();
+		while (pending.remaining() >= 8) {
+			h ^= round(0, pending.getLong());
+			h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+		}
+		if (pending.remaining() >= 4) {
+			h ^= (pending.getInt() & 0xFFFFFFFFL) * PRIME1;
+			h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+		}
+		while (pending.hasRemaining()) {
+			h ^= (pending.get() & 0xFFL) * PRIME5;
+			h = Long.rotateLeft(h, 11) * PRIME1;
+		}
+		
+		h ^= h >>> 33;
+		h *= PRIME2;
+		h ^= h >>> 29;
+		h *= PRIME3;
+		h ^= h >>> 32;
+		
+		reset();
+		return ByteBuffer.allocate(8).putLong(h).array();
+	}
+	
+	/**
+	 * This method consumes one 32-byte stripe of input.
+	 * 
+	 * @param in little-endian buffer with at least 32 bytes remaining
+	 */
+	private void stripe(ByteBuffer in) {
+		v1 = round(v1, in.getLong());
+		v2 = round(v2, in.getLong());
+		v3 = round(v3, in.getLong());
+		v4 = round(v4, in.getLong());
+	}
+	
+	private static long round(long acc, long input) {
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+	
+	private static long merge(long acc, long val) {
+		acc ^= round(0, val);
+		return acc * PRIME1 + PRIME4;
+	}
+}
@@ -0,0 +1,79 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of whole scans that delete duplicates: a file and its hard
+ * links are one file, in memory and in spill mode alike, so deleting
+ * duplicates never removes one link of a file in favour of another.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class CalculateTest {
+	@TempDir
+	Path dir;
+	
+	@Test
+	public void keepsHardLinksInMemory() throws Exception {
+		scanLinks();
+	}
+	
+	@Test
+	public void keepsHardLinksInSpillMode() throws Exception {
+		scanLinks("-mem", "1");
+	}
+	
+	private void scanLinks(String... options) throws Exception {
+		Path linked = write("linked", 1);
+		Path link = Files.createLink(dir.resolve("link"), linked);
+		Path copy1 = write("copy1", 2);
+		Path copy2 = write("copy2", 2);
+		
+		String[] args = new String[options.length + 2];
+		args[0] = dir.toString();
+		args[1] = "-d";
+		System.arraycopy(options, 0, args, 2, options.length);
+		ArgsParser parser = new ArgsParser(args);
+		assertTrue(parser.parseOK);
+		Calculate calc = new Calculate(parser);
+		calc.start();
+		calc.join();
+		
+		assertTrue(Files.exists(linked));
+		assertTrue(Files.exists(link));
+		assertEquals(1, (Files.exists(copy1) ? 1 : 0) + (Files.exists(copy2) ? 1 : 0));
+	}
+	
+	private Path write(String name, long seed) throws IOException {
+		byte[] data = new byte[100000];
+		new Random(seed).nextBytes(data);
+		return Files.write(dir.resolve(name), data);
+	}
+}
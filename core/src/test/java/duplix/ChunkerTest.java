@@ -0,0 +1,104 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of Chunker: chunk sizes stay within bounds, boundaries do
+ * not depend on how the input is fed, and they resynchronize after
+ * an insertion, so an edit only changes the chunks around it.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class ChunkerTest {
+	private static final int AVERAGE = 1024;
+	
+	@Test
+	public void chunksCoverInputWithinBounds() throws IOException {
+		byte[] data = random(200000, 1);
+		List<Integer> lengths = new ArrayList<>();
+		chunk(data, data.length, (digest, length) -> lengths.add(length));
+		
+		assertEquals(data.length, lengths.stream().mapToInt(Integer::intValue).sum());
+		for (int i = 0; i < lengths.size() - 1; i++) {
+			assertTrue(lengths.get(i) >= AVERAGE / 4, "chunk " + i + " too short");
+			assertTrue(lengths.get(i) <= AVERAGE * 8, "chunk " + i + " too long");
+		}
+	}
+	
+	@Test
+	public void boundariesDoNotDependOnBufferSize() throws IOException {
+		byte[] data = random(100000, 2);
+		assertEquals(chunks(data, data.length), chunks(data, 777));
+	}
+	
+	@Test
+	public void boundariesResynchronizeAfterInsert() throws IOException {
+		byte[] data = random(200000, 3);
+		byte[] edited = new byte[data.length + 100];
+		System.arraycopy(random(100, 4), 0, edited, 0, 100);
+		System.arraycopy(data, 0, edited, 100, data.length);
+		
+		List<String> before = chunks(data, 4096);
+		HashSet<String> after = new HashSet<>(chunks(edited, 4096));
+		int kept = 0;
+		for (String chunk : before) {
+			if (after.contains(chunk))
+				kept++;
+		}
+		// only the chunk holding the insertion may change
+		assertTrue(kept >= before.size() - 1, kept + " of " + before.size() + " chunks kept");
+	}
+	
+	@Test
+	public void emptyInputHasNoChunks() throws IOException {
+		assertTrue(chunks(new byte[0], 4096).isEmpty());
+	}
+	
+	private static List<String> chunks(byte[] data, int bufferSize) throws IOException {
+		List<String> chunks = new ArrayList<>();
+		chunk(data, bufferSize, (digest, length) -> 
+				chunks.add(ByteBuffer.wrap(digest).getLong() + ":" + length));
+		return chunks;
+	}
+	
+	private static void chunk(byte[] data, int bufferSize, Chunker.Sink sink) throws IOException {
+		Chunker chunker = new Chunker(new XxHash64(), AVERAGE, sink);
+		for (int offset = 0; offset < data.length; offset += bufferSize)
+			chunker.update(ByteBuffer.wrap(data, offset, Math.min(bufferSize, data.length - offset)));
+		chunker.finish();
+	}
+	
+	private static byte[] random(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,104 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of DigestIndex: files are grouped by digest and size, groups
+ * come back in digest order with their files in path order, and hard
+ * links are listed as aliases.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class DigestIndexTest {
+	@Test
+	public void groupsByDigest() {
+		PathTable paths = new PathTable();
+		DigestIndex index = new DigestIndex(paths, 8);
+		index.add(digest(2), paths.add(Paths.get("/d/b")), 10);
+		index.add(digest(1), paths.add(Paths.get("/d/z")), 10);
+		index.add(digest(3), paths.add(Paths.get("/d/c")), 10);
+		index.add(digest(2), paths.add(Paths.get("/d/a")), 10);
+		index.add(digest(1), paths.add(Paths.get("/d/y")), 10);
+		
+		List<DupeGroup> groups = index.getDuplicates();
+		assertEquals(2, groups.size());
+		assertArrayEquals(digest(1), groups.get(0).getDigest());
+		assertEquals(Arrays.asList("/d/y", "/d/z"), groups.get(0).getFiles());
+		assertArrayEquals(digest(2), groups.get(1).getDigest());
+		assertEquals(Arrays.asList("/d/a", "/d/b"), groups.get(1).getFiles());
+	}
+	
+	@Test
+	public void keepsSizesApart() {
+		PathTable paths = new PathTable();
+		DigestIndex index = new DigestIndex(paths, 8);
+		index.add(digest(1), paths.add(Paths.get("/d/a")), 10);
+		index.add(digest(1), paths.add(Paths.get("/d/b")), 20);
+		index.add(digest(1), paths.add(Paths.get("/d/c")), 20);
+		
+		List<DupeGroup> groups = index.getDuplicates();
+		assertEquals(1, groups.size());
+		assertEquals(20, groups.get(0).getSize());
+		assertEquals(Arrays.asList("/d/b", "/d/c"), groups.get(0).getFiles());
+	}
+	
+	@Test
+	public void groupsAfterResize() {
+		PathTable paths = new PathTable();
+		DigestIndex index = new DigestIndex(paths, 8);
+		for (int i = 0; i < 5000; i++) {
+			index.add(digest(i), paths.add(Paths.get("/a/" + i)), i);
+			index.add(digest(i), paths.add(Paths.get("/b/" + i)), i);
+		}
+		List<DupeGroup> groups = index.getDuplicates();
+		assertEquals(5000, groups.size());
+		for (int i = 0; i < groups.size(); i++) {
+			assertEquals(i, groups.get(i).getSize());
+			assertEquals(Arrays.asList("/a/" + i, "/b/" + i), groups.get(i).getFiles());
+		}
+	}
+	
+	@Test
+	public void listsHardLinksAsAliases() {
+		PathTable paths = new PathTable();
+		DigestIndex index = new DigestIndex(paths, 8);
+		int file = paths.add(Paths.get("/d/b"));
+		index.add(digest(1), file, 10);
+		index.add(digest(1), paths.add(Paths.get("/d/c")), 10);
+		index.addAlias(file, paths.add(Paths.get("/d/a")));
+		
+		DupeGroup group = index.getDuplicates().get(0);
+		assertEquals(Arrays.asList("/d/a", "/d/c"), group.getFiles());
+		assertEquals(Arrays.asList("/d/b"), group.getAliases("/d/a"));
+	}
+	
+	private static byte[] digest(long value) {
+		return ByteBuffer.allocate(8).putLong(value).array();
+	}
+}
@@ -0,0 +1,129 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of SpillSorter: records come back in unsigned column order
+ * whether they stay in memory or are spilled to more runs than a
+ * single merge can take, and run files are deleted on close.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class SpillSorterTest {
+	@TempDir
+	Path dir;
+	
+	@Test
+	public void sortsInMemory() throws IOException {
+		SpillSorter sorter = new SpillSorter(dir, "test", 2, 1 << 20);
+		List<long[]> records = addRandom(sorter, 1000, 2, 1);
+		assertEquals(0, sorter.getRunCount());
+		assertSorted(records, sorter.sorted());
+		sorter.close();
+	}
+	
+	@Test
+	public void mergesMoreRunsThanFanIn() throws IOException {
+		// a budget of one byte spills every record to a run of its own
+		SpillSorter sorter = new SpillSorter(dir, "test", 3, 1);
+		List<long[]> records = addRandom(sorter, SpillSorter.MAX_FAN_IN * 5 + 3, 3, 2);
+		assertTrue(sorter.getRunCount() > SpillSorter.MAX_FAN_IN);
+		assertSorted(records, sorter.sorted());
+		sorter.close();
+		try (Stream<Path> left = Files.list(dir)) {
+			assertEquals(0, left.count());
+		}
+	}
+	
+	@Test
+	public void comparesColumnsUnsigned() throws IOException {
+		SpillSorter sorter = new SpillSorter(dir, "test", 1, 1);
+		sorter.add(new long[] { -1 });
+		sorter.add(new long[] { Long.MAX_VALUE });
+		sorter.add(new long[] { 0 });
+		Iterator<long[]> sorted = sorter.sorted();
+		assertEquals(0, sorted.next()[0]);
+		assertEquals(Long.MAX_VALUE, sorted.next()[0]);
+		assertEquals(-1, sorted.next()[0]);
+		sorter.close();
+	}
+	
+	@Test
+	public void groupsOnLeadingColumns() throws IOException {
+		SpillSorter sorter = new SpillSorter(dir, "test", 2, 40);
+		for (long i = 0; i < 30; i++)
+			sorter.add(new long[] { i % 3, i });
+		Iterator<ArrayList<long[]>> groups = sorter.groups(1);
+		for (long key = 0; key < 3; key++) {
+			ArrayList<long[]> group = groups.next();
+			assertEquals(10, group.size());
+			for (long[] record : group)
+				assertEquals(key, record[0]);
+		}
+		assertFalse(groups.hasNext());
+		sorter.close();
+	}
+	
+	private static List<long[]> addRandom(SpillSorter sorter, int count, int width, long seed) 
+			throws IOException {
+		Random random = new Random(seed);
+		List<long[]> records = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			long[] record = new long[width];
+			// few distinct leading values, so later columns decide the order too
+			record[0] = random.nextInt(4) - 2;
+			for (int j = 1; j < width; j++)
+				record[j] = random.nextLong();
+			records.add(record);
+			sorter.add(record.clone());
+		}
+		return records;
+	}
+	
+	private static void assertSorted(List<long[]> records, Iterator<long[]> sorted) {
+		records.sort((a, b) -> {
+			for (int i = 0; i < a.length; i++) {
+				int c = Long.compareUnsigned(a[i], b[i]);
+				if (c != 0)
+					return c;
+			}
+			return 0;
+		});
+		for (long[] record : records)
+			assertArrayEquals(record, sorted.next());
+		assertFalse(sorted.hasNext());
+	}
+}
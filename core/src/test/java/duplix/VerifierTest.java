@@ -0,0 +1,102 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of Verifier: files are split by content, files that cannot
+ * be read are reported apart, and groups larger than the number of
+ * files it may hold open are still compared as one.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class VerifierTest {
+	@TempDir
+	Path dir;
+	
+	@Test
+	public void splitsByContent() throws IOException {
+		byte[] data = random(3 * Verifier.CHUNK_SIZE + 5, 1);
+		Path a = write("a", data);
+		Path b = write("b", data);
+		data[2 * Verifier.CHUNK_SIZE + 1] ^= 1;
+		Path c = write("c", data);
+		Path d = write("d", data);
+		data[data.length - 1] ^= 1;
+		Path e = write("e", data);
+		
+		List<LinkedList<Path>> groups = Verifier.split(Arrays.asList(a, c, b, e, d));
+		assertEquals(2, groups.size());
+		assertEquals(Arrays.asList(a, b), groups.get(0));
+		assertEquals(Arrays.asList(c, d), groups.get(1));
+	}
+	
+	@Test
+	public void reportsUnreadableFiles() throws IOException {
+		byte[] data = random(1000, 2);
+		Path a = write("a", data);
+		Path b = write("b", data);
+		Path missing = dir.resolve("missing");
+		
+		List<Path> unreadable = new ArrayList<>();
+		List<LinkedList<Path>> groups = Verifier.split(Arrays.asList(missing, a, b), unreadable);
+		assertEquals(Arrays.asList(Arrays.asList(a, b)), groups);
+		assertEquals(Arrays.asList(missing), unreadable);
+	}
+	
+	@Test
+	public void comparesMoreFilesThanMaxOpen() throws IOException {
+		byte[] data = random(2000, 3);
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < Verifier.MAX_OPEN * 2 + 1; i++)
+			files.add(write("same" + i, data));
+		data[1000] ^= 1;
+		Path changed = write("changed", data);
+		files.add(Verifier.MAX_OPEN, changed);
+		
+		List<LinkedList<Path>> groups = Verifier.split(files);
+		assertEquals(1, groups.size());
+		assertEquals(files.size() - 1, groups.get(0).size());
+		assertFalse(groups.get(0).contains(changed));
+	}
+	
+	private Path write(String name, byte[] data) throws IOException {
+		return Files.write(dir.resolve(name), data);
+	}
+	
+	private static byte[] random(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,77 @@
+/* Copyright (C) 2016  Bryan R. Martinez (https://github.com/bryanrm)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package duplix;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of XxHash64 against the published vectors of XXH64 with a
+ * seed of 0, and of feeding it input in pieces.
+ * 
+ * @author Bryan R Martinez
+ * @version 1.0
+ *
+ */
+public class XxHash64Test {
+	@Test
+	public void matchesPublishedVectors() {
+		assertEquals(0xEF46DB3751D8E999L, hash(""));
+		assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+		assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+		assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+	}
+	
+	@Test
+	public void piecesHashLikeTheWhole() {
+		byte[] data = new byte[10000];
+		Random random = new Random(1);
+		random.nextBytes(data);
+		XxHash64 md = new XxHash64();
+		md.update(ByteBuffer.wrap(data));
+		byte[] whole = md.digest();
+		
+		for (int offset = 0; offset < data.length; ) {
+			int length = Math.min(data.length - offset, random.nextInt(100));
+			md.update(ByteBuffer.wrap(data, offset, length));
+			offset += length;
+		}
+		assertArrayEquals(whole, md.digest());
+	}
+	
+	@Test
+	public void digestResets() {
+		XxHash64 md = new XxHash64();
+		md.update(ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)));
+		md.digest();
+		assertEquals(0xEF46DB3751D8E999L, ByteBuffer.wrap(md.digest()).getLong());
+	}
+	
+	private static long hash(String input) {
+		XxHash64 md = new XxHash64();
+		md.update(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+		byte[] digest = md.digest();
+		assertEquals(8, digest.length);
+		return ByteBuffer.wrap(digest).getLong();
+	}
+}